@@ -0,0 +1,39 @@
+package org.effectivemobile.tms.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Асинхронные запросы ограничены временем ожидания по умолчанию. Обработчик, которому нужно больше
+ * (например, потоковая выгрузка), задаёт своё время атрибутом запроса {@link #REQUEST_TIMEOUT_ATTRIBUTE},
+ * и оно применяется только к этому запросу.
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    public static final String REQUEST_TIMEOUT_ATTRIBUTE = AsyncConfig.class.getName() + ".REQUEST_TIMEOUT";
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new RequestTimeoutInterceptor());
+    }
+
+    private static class RequestTimeoutInterceptor implements CallableProcessingInterceptor {
+
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            Object timeout = request.getAttribute(REQUEST_TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (timeout instanceof Duration duration && request instanceof AsyncWebRequest asyncWebRequest) {
+                asyncWebRequest.setTimeout(duration.toMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.effectivemobile.tms.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String USERS_CACHE = "users";
+    public static final String COUNTS_CACHE = "counts";
+
+    public static final String USER_ENTITY_REGION = "userEntities";
+    public static final String TASK_ENTITY_REGION = "taskEntities";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${tms.cache.users.spec}") String usersSpec,
+                                     @Value("${tms.cache.counts.spec}") String countsSpec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(USERS_CACHE, Caffeine.from(usersSpec).build());
+        cacheManager.registerCustomCache(COUNTS_CACHE, Caffeine.from(countsSpec).build());
+        return cacheManager;
+    }
+
+    /**
+     * Регионы кэша второго уровня Hibernate. Каждый контекст приложения получает собственный
+     * провайдер, чтобы регионы не пересекались между контекстами в тестах. Статистика регионов
+     * публикуется в метриках cache.* с тегом cache, равным имени региона.
+     */
+    @Bean(destroyMethod = "close")
+    public javax.cache.CacheManager entityCacheManager(MeterRegistry meterRegistry,
+                                                       @Value("${tms.cache.entities.users.maximum-size}") long usersMaximumSize,
+                                                       @Value("${tms.cache.entities.users.expire-after-write}") Duration usersExpireAfterWrite,
+                                                       @Value("${tms.cache.entities.tasks.maximum-size}") long tasksMaximumSize,
+                                                       @Value("${tms.cache.entities.tasks.expire-after-write}") Duration tasksExpireAfterWrite) {
+        javax.cache.CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+        createRegion(cacheManager, meterRegistry, USER_ENTITY_REGION, usersMaximumSize, usersExpireAfterWrite);
+        createRegion(cacheManager, meterRegistry, TASK_ENTITY_REGION, tasksMaximumSize, tasksExpireAfterWrite);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(javax.cache.CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+
+    private static void createRegion(javax.cache.CacheManager cacheManager, MeterRegistry meterRegistry,
+                                     String region, long maximumSize, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        configuration.setNativeStatisticsEnabled(true);
+        javax.cache.Cache<Object, Object> cache = cacheManager.createCache(region, configuration);
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> nativeCache = cache.unwrap(Cache.class);
+        CaffeineCacheMetrics.monitor(meterRegistry, nativeCache, region);
+    }
+}
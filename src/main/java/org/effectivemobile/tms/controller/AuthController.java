@@ -2,6 +2,9 @@ package org.effectivemobile.tms.controller;
 
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,15 +13,21 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.effectivemobile.tms.dto.user.UserAuthRequestDto;
+import org.effectivemobile.tms.exception.InvalidRefreshTokenException;
 import org.effectivemobile.tms.service.AuthService;
+import org.effectivemobile.tms.util.jwt.AuthTokens;
+import org.effectivemobile.tms.util.jwt.TokenHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "Аутентификация")
 @RestController
 @RequiredArgsConstructor
@@ -28,24 +37,41 @@ public class AuthController {
 
     @Operation(summary = "Регистрация пользователя", responses = {
             @ApiResponse(responseCode = "200", description = "OK",
-                    content = @Content(schema = @Schema(defaultValue = "Ваш JWT")))
+                    headers = @Header(name = TokenHeaders.REFRESH_TOKEN, description = "Токен обновления"),
+                    content = @Content(schema = @Schema(defaultValue = "Ваш JWT"))),
+            @ApiResponse(responseCode = "503", description = "Сервер перегружен, повторите попытку позже")
     })
     @SecurityRequirements
     @PostMapping("/register")
-    public ResponseEntity<String> signUp(@RequestBody @Valid UserAuthRequestDto dto) {
-        String jwt = authService.signUp(dto);
-        return new ResponseEntity<>(jwt, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<String>> signUp(@RequestBody @Valid UserAuthRequestDto dto) {
+        return authService.signUp(dto).thenApply(AuthController::toResponse);
     }
 
     @Operation(summary = "Авторизация пользователя", responses = {
             @ApiResponse(responseCode = "200", description = "OK",
-                    content = @Content(schema = @Schema(defaultValue = "Ваш JWT")))
+                    headers = @Header(name = TokenHeaders.REFRESH_TOKEN, description = "Токен обновления"),
+                    content = @Content(schema = @Schema(defaultValue = "Ваш JWT"))),
+            @ApiResponse(responseCode = "503", description = "Сервер перегружен, повторите попытку позже")
     })
     @SecurityRequirements
     @PostMapping("/login")
-    public ResponseEntity<String> signIn(@RequestBody @Valid UserAuthRequestDto dto) {
-        String jwt = authService.signIn(dto);
-        return new ResponseEntity<>(jwt, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<String>> signIn(@RequestBody @Valid UserAuthRequestDto dto) {
+        return authService.signIn(dto).thenApply(AuthController::toResponse);
+    }
+
+    @Operation(summary = "Продление JWT по токену обновления",
+            description = "Токен обновления выдаётся при регистрации, авторизации и продлении и может быть использован только один раз",
+            parameters = @Parameter(name = TokenHeaders.REFRESH_TOKEN, in = ParameterIn.HEADER, description = "Токен обновления"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            headers = @Header(name = TokenHeaders.REFRESH_TOKEN, description = "Новый токен обновления"),
+                            content = @Content(schema = @Schema(defaultValue = "Ваш JWT"))),
+                    @ApiResponse(responseCode = "401", description = "Токен обновления недействителен, просрочен или уже использован")
+            })
+    @SecurityRequirements
+    @PostMapping("/token/refresh")
+    public ResponseEntity<String> refresh(@RequestHeader(name = TokenHeaders.REFRESH_TOKEN) String refreshToken) {
+        return toResponse(authService.refresh(refreshToken));
     }
 
     @Hidden
@@ -54,4 +80,14 @@ public class AuthController {
         return new ResponseEntity<>("Неверное имя пользователя или пароль", HttpStatus.BAD_REQUEST);
     }
 
+    @Hidden
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<String> handleInvalidRefreshTokenException(InvalidRefreshTokenException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNAUTHORIZED);
+    }
+
+    private static ResponseEntity<String> toResponse(AuthTokens tokens) {
+        return ResponseEntity.ok().header(TokenHeaders.REFRESH_TOKEN, tokens.refreshToken()).body(tokens.accessToken());
+    }
+
 }
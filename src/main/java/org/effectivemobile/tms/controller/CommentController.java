@@ -3,6 +3,7 @@ package org.effectivemobile.tms.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -12,9 +13,15 @@ import lombok.RequiredArgsConstructor;
 import org.effectivemobile.tms.dto.comment.CommentRequestDto;
 import org.effectivemobile.tms.dto.comment.CommentResponseDto;
 import org.effectivemobile.tms.service.CommentService;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.pagination.CursorUtils;
+import org.effectivemobile.tms.util.pagination.PaginationHeaders;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -30,19 +37,47 @@ public class CommentController {
     @Operation(summary = "Получить список комментариев к своей задаче (для исполнителей), к любой задаче (для администраторов)",
             parameters = {
                     @Parameter(name = "taskId", in = ParameterIn.PATH, description = "ID задачи"),
-                    @Parameter(name = "page", description = "Номер страницы"),
-                    @Parameter(name = "size", description = "Количество комментариев на странице")
+                    @Parameter(name = "page", description = "Номер страницы (игнорируется при указании курсора)"),
+                    @Parameter(name = "before", description = "Курсор: вернуть комментарии старше него, от новых к старым"),
+                    @Parameter(name = "size", description = "Количество комментариев на странице"),
+                    @Parameter(name = "withTotal", description = "Вернуть общее количество комментариев в заголовке X-Total-Count"),
+                    @Parameter(name = HttpHeaders.IF_NONE_MATCH, in = ParameterIn.HEADER, description = "ETag из предыдущего ответа")
             },
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
-                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = CommentResponseDto.class))))
+                            headers = {
+                                    @Header(name = PaginationHeaders.NEXT_CURSOR, description = "Курсор более старых комментариев, если они есть (при указании курсора)"),
+                                    @Header(name = PaginationHeaders.TOTAL_COUNT, description = "Общее количество комментариев (приблизительное)"),
+                                    @Header(name = HttpHeaders.ETAG, description = "Версия страницы комментариев")
+                            },
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = CommentResponseDto.class)))),
+                    @ApiResponse(responseCode = "304", description = "Комментарии не изменились")
             })
     @GetMapping
     public ResponseEntity<List<CommentResponseDto>> getAll(@PathVariable("taskId") Long taskId,
                                                            @RequestParam(name = "page", defaultValue = "0") Integer page,
-                                                           @RequestParam(name = "size", defaultValue = "10") Integer size) {
-        List<CommentResponseDto> comments = commentService.getAll(taskId, page, size);
-        return new ResponseEntity<>(comments, HttpStatus.OK);
+                                                           @RequestParam(name = "size", defaultValue = "10") Integer size,
+                                                           @RequestParam(name = "before", required = false) String before,
+                                                           @RequestParam(name = "withTotal", defaultValue = "false") Boolean withTotal,
+                                                           WebRequest request) {
+        if (request.checkNotModified(commentService.getETag(taskId, before == null ? page : before, size))) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        List<CommentResponseDto> comments;
+        if (before == null) {
+            comments = commentService.getAll(taskId, page, size);
+        } else {
+            Slice<CommentResponseDto> commentSlice = commentService.getAllBefore(taskId, before, size);
+            comments = commentSlice.getContent();
+            if (commentSlice.hasNext()) {
+                headers.set(PaginationHeaders.NEXT_CURSOR, CursorUtils.encode(comments.get(comments.size() - 1).getId()));
+            }
+        }
+        if (withTotal) {
+            headers.set(PaginationHeaders.TOTAL_COUNT, String.valueOf(commentService.count(taskId)));
+        }
+        return new ResponseEntity<>(comments, headers, HttpStatus.OK);
     }
 
     @Operation(summary = "Добавить новый комментарий к своей задаче (для исполнителей), к любой задаче (для администраторов)",
@@ -60,16 +95,20 @@ public class CommentController {
     @Operation(summary = "Редактировать комментарий к своей задаче (для исполнителей), к любой задаче (для администраторов)",
             parameters = {
                     @Parameter(name = "taskId", in = ParameterIn.PATH, description = "ID задачи"),
-                    @Parameter(name = "commentId", in = ParameterIn.PATH, description = "ID комментария")},
+                    @Parameter(name = "commentId", in = ParameterIn.PATH, description = "ID комментария"),
+                    @Parameter(name = HttpHeaders.IF_MATCH, in = ParameterIn.HEADER, description = "ETag комментария из предыдущего ответа")},
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
-                            content = @Content(schema = @Schema(implementation = CommentResponseDto.class)))
+                            headers = @Header(name = HttpHeaders.ETAG, description = "Новая версия комментария"),
+                            content = @Content(schema = @Schema(implementation = CommentResponseDto.class))),
+                    @ApiResponse(responseCode = "412", description = "Комментарий был изменён другим пользователем")
             })
     @PutMapping("/{commentId}")
     public ResponseEntity<CommentResponseDto> update(@PathVariable("taskId") Long taskId, @PathVariable("commentId") Long commentId,
-                                                     @RequestBody @Valid CommentRequestDto dto) {
-        CommentResponseDto updatedComment = commentService.update(taskId, commentId, dto);
-        return new ResponseEntity<>(updatedComment, HttpStatus.OK);
+                                                     @RequestBody @Valid CommentRequestDto dto,
+                                                     @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        CommentResponseDto updatedComment = commentService.update(taskId, commentId, dto, ifMatch);
+        return ResponseEntity.ok().eTag(ETagUtils.of(updatedComment.getId(), updatedComment.getVersion())).body(updatedComment);
     }
 
     @Operation(summary = "Удалить комментарий к своей задаче (для исполнителей), к любой задаче (для администраторов)",
@@ -3,22 +3,50 @@ package org.effectivemobile.tms.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.config.AsyncConfig;
+import org.effectivemobile.tms.dto.task.TaskBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBatchItemResultDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateResponseDto;
 import org.effectivemobile.tms.dto.task.TaskCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskDetailDto;
+import org.effectivemobile.tms.dto.task.TaskImportResultDto;
 import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskStatisticsDto;
+import org.effectivemobile.tms.dto.task.TaskSuggestionDto;
 import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
 import org.effectivemobile.tms.dto.task.TaskUpdateStatusRequestDto;
+import org.effectivemobile.tms.service.TaskExportService;
+import org.effectivemobile.tms.service.TaskImportService;
 import org.effectivemobile.tms.service.TaskService;
+import org.effectivemobile.tms.service.TaskStatisticsService;
+import org.effectivemobile.tms.service.TaskSuggestService;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.pagination.CursorUtils;
+import org.effectivemobile.tms.util.pagination.PaginationHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.List;
 
 @Tag(name = "Задачи")
@@ -28,38 +56,175 @@ import java.util.List;
 public class TaskController {
 
     private final TaskService taskService;
+    private final TaskExportService taskExportService;
+    private final TaskImportService taskImportService;
+    private final TaskStatisticsService taskStatisticsService;
+    private final TaskSuggestService taskSuggestService;
+
+    @Value("${tms.tasks.export.timeout}")
+    private Duration exportTimeout;
 
     @Operation(summary = "Получить список своих задач (для исполнителей), всех задач с возможностью фильтрации по исполнителю и автору (для администраторов)",
             parameters = {
-                    @Parameter(name = "page", description = "Номер страницы для выборки"),
+                    @Parameter(name = "page", description = "Номер страницы для выборки (игнорируется при указании курсора)"),
                     @Parameter(name = "size", description = "Количество задач на странице"),
+                    @Parameter(name = "after", description = "Курсор из заголовка X-Next-Cursor предыдущего ответа"),
                     @Parameter(name = "executorId", description = "ID исполнителя"),
-                    @Parameter(name = "authorId", description = "ID автора")},
+                    @Parameter(name = "authorId", description = "ID автора"),
+                    @Parameter(name = "withTotal", description = "Вернуть общее количество задач в заголовке X-Total-Count"),
+                    @Parameter(name = "includeArchived", description = "Включить завершённые задачи, перенесённые в архив")},
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
+                            headers = {
+                                    @Header(name = PaginationHeaders.NEXT_CURSOR, description = "Курсор следующей страницы, если она есть"),
+                                    @Header(name = PaginationHeaders.TOTAL_COUNT, description = "Общее количество задач (приблизительное)")},
                             content = @Content(array = @ArraySchema(schema = @Schema(implementation = TaskResponseDto.class))))
             })
     @GetMapping
     public ResponseEntity<List<TaskResponseDto>> getAllTasks(@RequestParam(name = "page", defaultValue = "0") Integer page,
                                                              @RequestParam(name = "size", defaultValue = "10") Integer size,
+                                                             @RequestParam(name = "after", required = false) String after,
                                                              @RequestParam(name = "executorId", required = false) Long executorId,
-                                                             @RequestParam(name = "authorId", required = false) Long authorId) {
-        List<TaskResponseDto> taskPage = taskService.getAll(page, size, executorId, authorId);
-        return new ResponseEntity<>(taskPage, HttpStatus.OK);
+                                                             @RequestParam(name = "authorId", required = false) Long authorId,
+                                                             @RequestParam(name = "withTotal", defaultValue = "false") Boolean withTotal,
+                                                             @RequestParam(name = "includeArchived", defaultValue = "false") Boolean includeArchived) {
+        Slice<TaskResponseDto> taskSlice = after == null
+                ? taskService.getAll(page, size, executorId, authorId, includeArchived)
+                : taskService.getAllAfter(after, size, executorId, authorId, includeArchived);
+        HttpHeaders headers = new HttpHeaders();
+        if (taskSlice.hasNext()) {
+            List<TaskResponseDto> tasks = taskSlice.getContent();
+            headers.set(PaginationHeaders.NEXT_CURSOR, CursorUtils.encode(tasks.get(tasks.size() - 1).getId()));
+        }
+        if (withTotal) {
+            headers.set(PaginationHeaders.TOTAL_COUNT, String.valueOf(taskService.count(executorId, authorId, includeArchived)));
+        }
+        return new ResponseEntity<>(taskSlice.getContent(), headers, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Найти свои задачи (для исполнителей), любые задачи с возможностью фильтрации по исполнителю и автору (для администраторов)",
+            description = "Поиск по названию, описанию и комментариям. Поддерживаются фразы в кавычках, OR и исключение слов через минус. " +
+                    "Результаты упорядочены по релевантности",
+            parameters = {
+                    @Parameter(name = "q", description = "Поисковый запрос"),
+                    @Parameter(name = "page", description = "Номер страницы для выборки"),
+                    @Parameter(name = "size", description = "Количество задач на странице"),
+                    @Parameter(name = "executorId", description = "ID исполнителя (только для администраторов)"),
+                    @Parameter(name = "authorId", description = "ID автора (только для администраторов)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = TaskResponseDto.class))))
+            })
+    @GetMapping(path = "/search")
+    public ResponseEntity<List<TaskResponseDto>> search(@RequestParam(name = "q") String query,
+                                                        @RequestParam(name = "page", defaultValue = "0") Integer page,
+                                                        @RequestParam(name = "size", defaultValue = "10") Integer size,
+                                                        @RequestParam(name = "executorId", required = false) Long executorId,
+                                                        @RequestParam(name = "authorId", required = false) Long authorId) {
+        Slice<TaskResponseDto> taskSlice = taskService.search(query, page, size, executorId, authorId);
+        return new ResponseEntity<>(taskSlice.getContent(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Статистика по своим задачам (для исполнителей), по задачам исполнителя, автора или по всем задачам (для администраторов)",
+            description = "Количество задач по статусам и приоритетам. Одновременно можно указать только исполнителя или только автора",
+            parameters = {
+                    @Parameter(name = "executorId", description = "ID исполнителя (только для администраторов)"),
+                    @Parameter(name = "authorId", description = "ID автора (только для администраторов)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(schema = @Schema(implementation = TaskStatisticsDto.class))),
+                    @ApiResponse(responseCode = "400", description = "Указаны и исполнитель, и автор")
+            })
+    @GetMapping(path = "/statistics")
+    public ResponseEntity<TaskStatisticsDto> getStatistics(@RequestParam(name = "executorId", required = false) Long executorId,
+                                                           @RequestParam(name = "authorId", required = false) Long authorId) {
+        return new ResponseEntity<>(taskStatisticsService.get(executorId, authorId), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Подсказки по названиям своих задач (для исполнителей), любых задач с возможностью фильтрации по исполнителю и автору (для администраторов)",
+            description = "Возвращает задачи, в названии которых каждое слово префикса является началом какого-либо слова. " +
+                    "Подсказки строятся по индексу в памяти и могут не учитывать изменения, сделанные другими экземплярами приложения",
+            parameters = {
+                    @Parameter(name = "prefix", description = "Начало названия"),
+                    @Parameter(name = "limit", description = "Максимальное количество подсказок, от 1 до 50"),
+                    @Parameter(name = "executorId", description = "ID исполнителя (только для администраторов)"),
+                    @Parameter(name = "authorId", description = "ID автора (только для администраторов)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = TaskSuggestionDto.class))))
+            })
+    @GetMapping(path = "/suggest")
+    public ResponseEntity<List<TaskSuggestionDto>> suggest(@RequestParam(name = "prefix") String prefix,
+                                                           @RequestParam(name = "limit", defaultValue = "10") Integer limit,
+                                                           @RequestParam(name = "executorId", required = false) Long executorId,
+                                                           @RequestParam(name = "authorId", required = false) Long authorId) {
+        return new ResponseEntity<>(taskSuggestService.suggest(prefix, limit, executorId, authorId), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Выгрузить свои задачи (для исполнителей), все задачи с возможностью фильтрации по исполнителю и автору (для администраторов)",
+            parameters = {
+                    @Parameter(name = "format", description = "Формат выгрузки: NDJSON или CSV"),
+                    @Parameter(name = "withComments", description = "Выгрузить задачи вместе с комментариями"),
+                    @Parameter(name = "executorId", description = "ID исполнителя (только для администраторов)"),
+                    @Parameter(name = "authorId", description = "ID автора (только для администраторов)")
+            },
+            responses = @ApiResponse(responseCode = "200", description = "OK",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}))
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(name = "format", defaultValue = "NDJSON") ExportFormat format,
+                                                        @RequestParam(name = "withComments", defaultValue = "false") Boolean withComments,
+                                                        @RequestParam(name = "executorId", required = false) Long executorId,
+                                                        @RequestParam(name = "authorId", required = false) Long authorId,
+                                                        WebRequest request) {
+        StreamingResponseBody body = taskExportService.export(format, withComments, executorId, authorId);
+        request.setAttribute(AsyncConfig.REQUEST_TIMEOUT_ATTRIBUTE, exportTimeout, RequestAttributes.SCOPE_REQUEST);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("tasks." + format.getExtension()).build().toString())
+                .body(body);
     }
 
     @Operation(summary = "Получить сведения о своей задаче (для исполнителей), о любой задаче (для администраторов)",
-            parameters = @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+            parameters = {
+                    @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+                    @Parameter(name = HttpHeaders.IF_NONE_MATCH, in = ParameterIn.HEADER, description = "ETag из предыдущего ответа")
+            },
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
-                            content = @Content(schema = @Schema(implementation = TaskResponseDto.class)))
+                            headers = @Header(name = HttpHeaders.ETAG, description = "Версия задачи"),
+                            content = @Content(schema = @Schema(implementation = TaskResponseDto.class))),
+                    @ApiResponse(responseCode = "304", description = "Задача не изменилась")
             })
     @GetMapping(path = "/{id}")
-    public ResponseEntity<TaskResponseDto> getById(@PathVariable("id") Long id) {
+    public ResponseEntity<TaskResponseDto> getById(@PathVariable("id") Long id, WebRequest request) {
+        if (request.checkNotModified(taskService.getETag(id))) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         TaskResponseDto task = taskService.getById(id);
         return new ResponseEntity<>(task, HttpStatus.OK);
     }
 
+    @Operation(summary = "Получить свою задачу (для исполнителей), любую задачу (для администраторов) вместе с последними комментариями",
+            description = "Более старые комментарии запрашиваются через GET /tasks/{taskId}/comments с курсором olderCommentsCursor",
+            parameters = {
+                    @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+                    @Parameter(name = "comments", description = "Количество последних комментариев (от 1 до 50)")
+            },
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(schema = @Schema(implementation = TaskDetailDto.class)))
+            })
+    @GetMapping(path = "/{id}/detail")
+    public ResponseEntity<TaskDetailDto> getDetail(@PathVariable("id") Long id,
+                                                   @RequestParam(name = "comments", defaultValue = "5") Integer comments) {
+        TaskDetailDto detail = taskService.getDetail(id, comments);
+        return new ResponseEntity<>(detail, HttpStatus.OK);
+    }
+
     @Operation(summary = "Создать новую задачу (только для администраторов)",
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
@@ -71,39 +236,95 @@ public class TaskController {
         return new ResponseEntity<>(task, HttpStatus.OK);
     }
 
+    @Operation(summary = "Создать несколько задач за один запрос (только для администраторов)",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = TaskBatchItemResultDto.class))))
+            })
+    @PostMapping(path = "/batch")
+    public ResponseEntity<List<TaskBatchItemResultDto>> createBatch(@RequestBody @Valid TaskBatchCreateRequestDto dto) {
+        List<TaskBatchItemResultDto> results = taskService.createBatch(dto);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
     @Operation(summary = "Изменить статус своей задачи (для исполнителей), любой задачи (для администраторов)",
-            parameters = @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+            description = "Архивная задача при смене статуса на незавершённый возвращается из архива",
+            parameters = {
+                    @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+                    @Parameter(name = HttpHeaders.IF_MATCH, in = ParameterIn.HEADER,
+                            description = "ETag задачи; без него изменение применяется к актуальной версии")
+            },
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
-                            content = @Content(schema = @Schema(implementation = TaskResponseDto.class)))
+                            headers = @Header(name = HttpHeaders.ETAG, description = "Новая версия задачи"),
+                            content = @Content(schema = @Schema(implementation = TaskResponseDto.class))),
+                    @ApiResponse(responseCode = "412", description = "Задача была изменена другим пользователем")
             })
     @PatchMapping(path = "/{id}")
-    public ResponseEntity<TaskResponseDto> updateStatus(@PathVariable("id") Long id, @RequestBody @Valid TaskUpdateStatusRequestDto dto) {
-        TaskResponseDto task = taskService.updateStatus(id, dto);
-        return new ResponseEntity<>(task, HttpStatus.OK);
+    public ResponseEntity<TaskResponseDto> updateStatus(@PathVariable("id") Long id, @RequestBody @Valid TaskUpdateStatusRequestDto dto,
+                                                        @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TaskResponseDto task = taskService.updateStatus(id, dto, ifMatch);
+        return ResponseEntity.ok().eTag(ETagUtils.of(task.getId(), task.getVersion())).body(task);
+    }
+
+    @Operation(summary = "Импортировать задачи из файла в формате выгрузки (только для администраторов)",
+            parameters = @Parameter(name = "format", description = "Формат файла: NDJSON или CSV"),
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(schema = @Schema(implementation = TaskImportResultDto.class)))
+            })
+    @PostMapping(path = "/import")
+    public ResponseEntity<TaskImportResultDto> importTasks(@RequestParam(name = "format", defaultValue = "NDJSON") ExportFormat format,
+                                                           InputStream inputStream) {
+        TaskImportResultDto result = taskImportService.importTasks(format, inputStream);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Изменить статус нескольких своих задач (для исполнителей), любых задач (для администраторов)",
+            description = "Архивные задачи при смене статуса на незавершённый возвращаются из архива",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(schema = @Schema(implementation = TaskBulkStatusUpdateResponseDto.class)))
+            })
+    @PatchMapping(path = "/batch")
+    public ResponseEntity<TaskBulkStatusUpdateResponseDto> updateStatuses(@RequestBody @Valid TaskBulkStatusUpdateRequestDto dto) {
+        TaskBulkStatusUpdateResponseDto result = taskService.updateStatuses(dto);
+        return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
     @Operation(summary = "Редактировать любую задачу (только для администраторов)",
-            parameters = @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+            parameters = {
+                    @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
+                    @Parameter(name = HttpHeaders.IF_MATCH, in = ParameterIn.HEADER, description = "ETag задачи из предыдущего ответа")
+            },
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
-                            content = @Content(schema = @Schema(implementation = TaskResponseDto.class)))
+                            headers = @Header(name = HttpHeaders.ETAG, description = "Новая версия задачи"),
+                            content = @Content(schema = @Schema(implementation = TaskResponseDto.class))),
+                    @ApiResponse(responseCode = "412", description = "Задача была изменена другим пользователем")
             })
     @PutMapping(path = "/{id}")
-    public ResponseEntity<TaskResponseDto> update(@PathVariable("id") Long id, @RequestBody @Valid TaskUpdateRequestDto dto) {
-        TaskResponseDto task = taskService.update(id, dto);
-        return new ResponseEntity<>(task, HttpStatus.OK);
+    public ResponseEntity<TaskResponseDto> update(@PathVariable("id") Long id, @RequestBody @Valid TaskUpdateRequestDto dto,
+                                                  @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TaskResponseDto task = taskService.update(id, dto, ifMatch);
+        return ResponseEntity.ok().eTag(ETagUtils.of(task.getId(), task.getVersion())).body(task);
     }
 
     @Operation(summary = "Удалить любую задачу (только для администраторов)",
             parameters = @Parameter(name = "id", in = ParameterIn.PATH, description = "ID задачи"),
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
-                            content = @Content(schema = @Schema(defaultValue = "Задача успешно удалена")))
+                            content = @Content(schema = @Schema(defaultValue = "Задача успешно удалена"))),
+                    @ApiResponse(responseCode = "202", description = "У задачи много комментариев, она будет удалена в фоне",
+                            content = @Content(schema = @Schema(defaultValue = "Задача будет удалена в фоне")))
             })
     @DeleteMapping(path = "/{id}")
     public ResponseEntity<String> delete(@PathVariable("id") Long id) {
-        taskService.delete(id);
-        return new ResponseEntity<>("Задача успешно удалена", HttpStatus.OK);
+        if (taskService.delete(id)) {
+            return new ResponseEntity<>("Задача успешно удалена", HttpStatus.OK);
+        }
+        return new ResponseEntity<>("Задача будет удалена в фоне", HttpStatus.ACCEPTED);
     }
 }
@@ -3,18 +3,25 @@ package org.effectivemobile.tms.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.user.UserBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.user.UserBatchItemResultDto;
 import org.effectivemobile.tms.dto.user.UserResponseDto;
+import org.effectivemobile.tms.service.UserProvisioningService;
 import org.effectivemobile.tms.service.UserService;
+import org.effectivemobile.tms.util.pagination.PaginationHeaders;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.Valid;
 import java.util.List;
 
 @Tag(name = "Пользователи")
@@ -24,21 +31,29 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserProvisioningService userProvisioningService;
 
     @Operation(summary = "Получить список всех пользователей (только для администраторов)",
             parameters = {
                     @Parameter(name = "page", description = "Номер страницы"),
-                    @Parameter(name = "size", description = "Количество пользователей на странице")
+                    @Parameter(name = "size", description = "Количество пользователей на странице"),
+                    @Parameter(name = "withTotal", description = "Вернуть общее количество пользователей в заголовке X-Total-Count")
             },
             responses = {
                     @ApiResponse(responseCode = "200", description = "OK",
+                            headers = @Header(name = PaginationHeaders.TOTAL_COUNT, description = "Общее количество пользователей (приблизительное)"),
                             content = @Content(array = @ArraySchema(schema = @Schema(implementation = UserResponseDto.class))))
             })
     @GetMapping
     public ResponseEntity<List<UserResponseDto>> getAll(@RequestParam(name = "page", defaultValue = "0") Integer page,
-                                                        @RequestParam(name = "size", defaultValue = "10") Integer size) {
+                                                        @RequestParam(name = "size", defaultValue = "10") Integer size,
+                                                        @RequestParam(name = "withTotal", defaultValue = "false") Boolean withTotal) {
         List<UserResponseDto> users = userService.getAll(page, size);
-        return new ResponseEntity<>(users, HttpStatus.OK);
+        HttpHeaders headers = new HttpHeaders();
+        if (withTotal) {
+            headers.set(PaginationHeaders.TOTAL_COUNT, String.valueOf(userService.count()));
+        }
+        return new ResponseEntity<>(users, headers, HttpStatus.OK);
     }
 
     @Operation(summary = "Получить сведения о себе (для пользователей), о любом пользователе (для администраторов)",
@@ -52,4 +67,16 @@ public class UserController {
         UserResponseDto user = userService.getById(id);
         return new ResponseEntity<>(user, HttpStatus.OK);
     }
+
+    @Operation(summary = "Создать несколько пользователей за один запрос (только для администраторов)",
+            description = "Пароли хэшируются параллельно; для каждого пользователя возвращается результат или причина отказа",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = UserBatchItemResultDto.class))))
+            })
+    @PostMapping(path = "/batch")
+    public ResponseEntity<List<UserBatchItemResultDto>> createBatch(@RequestBody @Valid UserBatchCreateRequestDto dto) {
+        List<UserBatchItemResultDto> results = userProvisioningService.createBatch(dto);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
 }
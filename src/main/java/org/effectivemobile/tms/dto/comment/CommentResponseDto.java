@@ -24,4 +24,7 @@ public class CommentResponseDto {
 
     @Schema(description = "Автор", example = "1")
     private Long authorId;
+
+    @Schema(description = "Версия", example = "0")
+    private Long version;
 }
@@ -0,0 +1,22 @@
+package org.effectivemobile.tms.dto.comment;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Сводка по комментариям задачи, меняющаяся при любом добавлении, изменении или удалении комментария.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentVersionDto {
+
+    private Long count;
+
+    private Long maxId;
+
+    private Long versionSum;
+}
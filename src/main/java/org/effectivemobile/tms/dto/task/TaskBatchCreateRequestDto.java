@@ -0,0 +1,26 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchCreateRequestDto {
+
+    @ArraySchema(arraySchema = @Schema(description = "Создаваемые задачи"), schema = @Schema(implementation = TaskCreateRequestDto.class))
+    @NotEmpty(message = "Список задач не может быть пустым")
+    @Size(max = 5000, message = "За один запрос можно создать не более 5000 задач")
+    private List<@Valid TaskCreateRequestDto> tasks;
+}
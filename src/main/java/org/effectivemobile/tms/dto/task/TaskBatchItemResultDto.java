@@ -0,0 +1,24 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchItemResultDto {
+
+    @Schema(description = "Порядковый номер задачи в запросе", example = "0")
+    private Integer index;
+
+    @Schema(description = "Созданная задача, если она была создана")
+    private TaskResponseDto task;
+
+    @Schema(description = "Причина отказа, если задача не была создана", example = "Исполнитель не найден")
+    private String error;
+}
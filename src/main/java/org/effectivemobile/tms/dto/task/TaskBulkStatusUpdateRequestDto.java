@@ -0,0 +1,31 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.effectivemobile.tms.util.enums.Status;
+
+import java.util.List;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBulkStatusUpdateRequestDto {
+
+    @ArraySchema(arraySchema = @Schema(description = "ID задач"), schema = @Schema(example = "1"))
+    @NotEmpty(message = "Список задач не может быть пустым")
+    @Size(max = 1000, message = "За один запрос можно изменить не более 1000 задач")
+    private List<@NotNull(message = "ID задачи не может быть пустым") Long> ids;
+
+    @Schema(description = "Статус", example = "WAITING/IN_PROGRESS/COMPLETED")
+    @NotNull(message = "Статус должен быть выбран")
+    private Status status;
+}
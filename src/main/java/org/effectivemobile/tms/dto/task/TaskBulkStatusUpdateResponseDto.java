@@ -0,0 +1,24 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBulkStatusUpdateResponseDto {
+
+    @ArraySchema(arraySchema = @Schema(description = "ID задач, статус которых изменён"), schema = @Schema(example = "1"))
+    private List<Long> updated;
+
+    @ArraySchema(arraySchema = @Schema(description = "ID задач, которые не найдены или недоступны пользователю"), schema = @Schema(example = "2"))
+    private List<Long> rejected;
+}
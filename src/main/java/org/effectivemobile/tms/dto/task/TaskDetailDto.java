@@ -0,0 +1,32 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+
+import java.util.List;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskDetailDto {
+
+    @Schema(description = "Задача")
+    private TaskResponseDto task;
+
+    @Schema(description = "Общее количество комментариев", example = "12")
+    private Long commentCount;
+
+    @ArraySchema(arraySchema = @Schema(description = "Последние комментарии, от новых к старым"),
+            schema = @Schema(implementation = CommentResponseDto.class))
+    private List<CommentResponseDto> latestComments;
+
+    @Schema(description = "Курсор для получения более старых комментариев, если они есть", example = "MTI")
+    private String olderCommentsCursor;
+}
@@ -0,0 +1,27 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskImportResultDto {
+
+    @Schema(description = "Количество импортированных задач", example = "998")
+    private Long imported;
+
+    @Schema(description = "Количество задач, отклонённых из-за несуществующего исполнителя", example = "2")
+    private Long rejected;
+
+    @ArraySchema(arraySchema = @Schema(description = "Номера первых отклонённых записей"), schema = @Schema(example = "17"))
+    private List<Long> rejectedLines;
+}
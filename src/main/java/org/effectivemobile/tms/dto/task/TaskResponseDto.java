@@ -35,4 +35,7 @@ public class TaskResponseDto {
 
     @Schema(description = "ID исполнителя", example = "2")
     private Long executorId;
+
+    @Schema(description = "Версия", example = "0")
+    private Long version;
 }
@@ -0,0 +1,31 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Status;
+
+import java.util.Map;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskStatisticsDto {
+
+    @Schema(description = "Всего задач", example = "12")
+    private Long total;
+
+    @Schema(description = "Количество задач по статусам", example = "{\"WAITING\": 5, \"IN_PROGRESS\": 4, \"COMPLETED\": 3}")
+    private Map<Status, Long> byStatus;
+
+    @Schema(description = "Количество задач по приоритетам", example = "{\"LOW\": 2, \"MEDIUM\": 6, \"HIGH\": 4}")
+    private Map<Priority, Long> byPriority;
+
+    @Schema(description = "Количество задач по статусам и приоритетам")
+    private Map<Status, Map<Priority, Long>> byStatusAndPriority;
+}
@@ -0,0 +1,21 @@
+package org.effectivemobile.tms.dto.task;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskSuggestionDto {
+
+    @Schema(description = "ID", example = "1")
+    private Long id;
+
+    @Schema(description = "Название", example = "Подготовить отчёт")
+    private String title;
+}
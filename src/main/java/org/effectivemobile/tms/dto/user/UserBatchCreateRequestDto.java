@@ -0,0 +1,26 @@
+package org.effectivemobile.tms.dto.user;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchCreateRequestDto {
+
+    @ArraySchema(arraySchema = @Schema(description = "Создаваемые пользователи"), schema = @Schema(implementation = UserAuthRequestDto.class))
+    @NotEmpty(message = "Список пользователей не может быть пустым")
+    @Size(max = 500, message = "За один запрос можно создать не более 500 пользователей")
+    private List<@Valid UserAuthRequestDto> users;
+}
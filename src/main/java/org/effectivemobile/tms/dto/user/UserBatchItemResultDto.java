@@ -0,0 +1,24 @@
+package org.effectivemobile.tms.dto.user;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Schema
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchItemResultDto {
+
+    @Schema(description = "Порядковый номер пользователя в запросе", example = "0")
+    private Integer index;
+
+    @Schema(description = "Созданный пользователь, если он был создан")
+    private UserResponseDto user;
+
+    @Schema(description = "Причина отказа, если пользователь не был создан", example = "Пользователь с таким именем уже существует")
+    private String error;
+}
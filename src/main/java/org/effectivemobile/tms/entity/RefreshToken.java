@@ -0,0 +1,38 @@
+package org.effectivemobile.tms.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.effectivemobile.tms.util.enums.Role;
+
+import java.time.Instant;
+
+@Entity
+@Table(schema = "t", name = "refresh_tokens")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refresh_tokens_id_seq")
+    @SequenceGenerator(name = "refresh_tokens_id_seq", schema = "t", sequenceName = "refresh_tokens_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(unique = true)
+    private String tokenHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private User user;
+
+    private Instant expiresAt;
+
+    @Column(unique = true)
+    private String previousTokenHash;
+
+    @Enumerated(EnumType.STRING)
+    private Role role;
+}
@@ -5,13 +5,21 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.effectivemobile.tms.config.CacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 import org.effectivemobile.tms.util.enums.Priority;
 import org.effectivemobile.tms.util.enums.Status;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
 @Table(schema = "t", name = "tasks")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.TASK_ENTITY_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -19,9 +27,13 @@ import java.util.List;
 public class Task {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tasks_id_seq")
+    @SequenceGenerator(name = "tasks_id_seq", schema = "t", sequenceName = "tasks_id_seq", allocationSize = 50)
     private Long id;
 
+    @Version
+    private Long version;
+
     private String title;
 
     private String description;
@@ -32,12 +44,28 @@ public class Task {
     @Enumerated(EnumType.STRING)
     private Priority priority;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User executor;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User author;
 
-    @OneToMany(mappedBy = "task", cascade = CascadeType.ALL)
+    /**
+     * Комментарии удаляются вместе с задачей внешним ключом ON DELETE CASCADE,
+     * поэтому Hibernate не загружает их при удалении задачи.
+     */
+    @OneToMany(mappedBy = "task")
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private List<Comment> comments;
+
+    /**
+     * Время постановки на фоновое удаление; такая задача скрыта от чтения и изменения.
+     */
+    private Instant deletingAt;
+
+    /**
+     * Задача прочитана из архива; такая задача доступна только для чтения.
+     */
+    @Transient
+    private boolean archived;
 }
@@ -0,0 +1,12 @@
+package org.effectivemobile.tms.exception;
+
+/**
+ * Некорректные параметры запроса клиента. Сообщение возвращается клиенту с кодом 400,
+ * поэтому исключение выбрасывается только при проверке входных данных.
+ */
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
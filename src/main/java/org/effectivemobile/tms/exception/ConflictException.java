@@ -0,0 +1,12 @@
+package org.effectivemobile.tms.exception;
+
+/**
+ * Запрос противоречит текущему состоянию ресурса, например изменение архивной задачи.
+ * Сообщение возвращается клиенту с кодом 409.
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
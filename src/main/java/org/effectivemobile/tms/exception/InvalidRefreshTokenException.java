@@ -0,0 +1,8 @@
+package org.effectivemobile.tms.exception;
+
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
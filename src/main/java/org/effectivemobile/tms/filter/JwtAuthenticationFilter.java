@@ -8,6 +8,7 @@ import lombok.RequiredArgsConstructor;
 import org.effectivemobile.tms.entity.User;
 import org.effectivemobile.tms.service.JwtService;
 import org.effectivemobile.tms.service.UserService;
+import org.effectivemobile.tms.util.jwt.JwtClaims;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,6 +16,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -32,10 +34,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String jwt = authHeader.substring(7);
-        String username = jwtService.extractUsername(jwt);
-        if (!username.isEmpty() && SecurityContextHolder.getContext().getAuthentication() == null) {
-            User user = userService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, user)) {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            Optional<JwtClaims> claims = jwtService.verify(jwt);
+            if (claims.isPresent()) {
+                User user = resolveUser(claims.get());
                 SecurityContext context = SecurityContextHolder.createEmptyContext();
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
                 context.setAuthentication(authToken);
@@ -44,4 +46,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    private User resolveUser(JwtClaims claims) {
+        if (jwtService.isSelfContained() && claims.isSelfContained()) {
+            return new User(claims.userId(), claims.subject(), null, claims.role());
+        }
+        return userService.loadUserByUsername(claims.subject());
+    }
 }
@@ -0,0 +1,38 @@
+package org.effectivemobile.tms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Запросы для удаления комментариев задачи частями. Выполняются через JDBC, а не нативными запросами
+ * Hibernate: нативный DELETE без указания затронутых сущностей очищает весь кэш второго уровня,
+ * а комментарии в нём не хранятся.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CommentPurgeRepository {
+
+    private static final String COUNT_UP_TO =
+            "SELECT count(*) FROM (SELECT 1 FROM t.comments WHERE task_id = ? LIMIT ?) c";
+
+    private static final String DELETE_CHUNK =
+            "DELETE FROM t.comments WHERE id IN (SELECT id FROM t.comments WHERE task_id = ? LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Количество комментариев задачи, но не больше limit: читается не более limit записей индекса.
+     */
+    public long countUpTo(Long taskId, int limit) {
+        Long count = jdbcTemplate.queryForObject(COUNT_UP_TO, Long.class, taskId, limit);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Удаляет не более limit комментариев задачи и возвращает их количество.
+     */
+    public int deleteChunk(Long taskId, int limit) {
+        return jdbcTemplate.update(DELETE_CHUNK, taskId, limit);
+    }
+}
@@ -1,11 +1,37 @@
 package org.effectivemobile.tms.repository;
 
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.comment.CommentVersionDto;
 import org.effectivemobile.tms.entity.Comment;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
-    Page<Comment> findAllByTaskId(Long taskId, Pageable pageable);
+    @Query("select new org.effectivemobile.tms.dto.comment.CommentResponseDto(c.id, c.task.id, c.content, c.author.id, c.version) " +
+            "from Comment c where c.task.id = :taskId")
+    Slice<CommentResponseDto> findAllByTaskId(@Param("taskId") Long taskId, Pageable pageable);
+
+    /**
+     * Комментарии задачи от новых к старым с ID меньше before; читаются обратным обходом индекса (task_id, id).
+     */
+    @Query("select new org.effectivemobile.tms.dto.comment.CommentResponseDto(c.id, c.task.id, c.content, c.author.id, c.version) " +
+            "from Comment c where c.task.id = :taskId and c.id < :before order by c.id desc")
+    Slice<CommentResponseDto> findAllByTaskIdBefore(@Param("taskId") Long taskId, @Param("before") Long before, Pageable pageable);
+
+    long countByTaskId(Long taskId);
+
+    /**
+     * Ревизия комментариев задачи, которую триггеры PostgreSQL увеличивают при каждом изменении её комментариев.
+     * Ревизия хранится отдельно от задачи и сохраняется при переносе задачи в архив и обратно.
+     */
+    @Query(value = "SELECT coalesce(max(version), 0) FROM t.task_comment_revisions WHERE task_id = :taskId", nativeQuery = true)
+    long findRevisionByTaskId(@Param("taskId") Long taskId);
+
+    @Query("select new org.effectivemobile.tms.dto.comment.CommentVersionDto(count(c), coalesce(max(c.id), 0), coalesce(sum(c.version), 0)) " +
+            "from Comment c where c.task.id = :taskId")
+    CommentVersionDto findVersionByTaskId(@Param("taskId") Long taskId);
 }
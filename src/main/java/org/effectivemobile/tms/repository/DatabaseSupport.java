@@ -0,0 +1,35 @@
+package org.effectivemobile.tms.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Возможности СУБД, к которой подключено приложение. Запросы, специфичные для PostgreSQL
+ * (COPY, RETURNING, триггерные счётчики, архив), выполняются только на нём, на остальных СУБД
+ * (H2 в тестах) репозитории используют переносимые запросы. СУБД определяется один раз при запуске.
+ */
+@Component
+public class DatabaseSupport {
+
+    private final boolean postgreSql;
+
+    public DatabaseSupport(DataSource dataSource) {
+        this.postgreSql = isPostgreSql(dataSource);
+    }
+
+    public boolean isPostgreSql() {
+        return postgreSql;
+    }
+
+    private static boolean isPostgreSql(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isWrapperFor(PGConnection.class);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package org.effectivemobile.tms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Перенос завершённых задач с комментариями в архивные таблицы t.tasks_archive и t.comments_archive и обратно.
+ * Задачи переносятся с теми же ID и версиями. Запросы выполняются через JDBC, а не нативными запросами
+ * Hibernate, которые очищают весь кэш второго уровня; перенесённые задачи удаляются из кэша вызывающим кодом.
+ * Методы переноса должны вызываться внутри транзакции.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TaskArchiveRepository {
+
+    private static final String TASK_COLUMNS = "id, title, description, status, priority, author_id, executor_id, version";
+
+    /*
+     * Задачи, которые сейчас изменяются, пропускаются и будут перенесены при следующем запуске,
+     * задачи, поставленные на фоновое удаление, не переносятся. Блокировка строк задач
+     * не даёт добавить к ним комментарии до конца переноса.
+     */
+    private static final String LOCK_COMPLETED = """
+            SELECT id, title, executor_id, author_id, version FROM t.tasks
+            WHERE status = 'COMPLETED' AND completed_at < ? AND deleting_at IS NULL
+            ORDER BY completed_at
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED""";
+
+    private static final String INSERT_ARCHIVED_TASKS = """
+            INSERT INTO t.tasks_archive (%1$s, completed_at)
+            SELECT %1$s, completed_at FROM t.tasks WHERE id = ANY(?)""".formatted(TASK_COLUMNS);
+
+    /*
+     * Комментарии не блокируются задачей при изменении, поэтому они переносятся через DELETE ... RETURNING:
+     * комментарий, изменённый параллельно, попадает в архив в последней версии.
+     */
+    private static final String MOVE_COMMENTS_TO_ARCHIVE = """
+            WITH moved AS (
+                DELETE FROM t.comments WHERE task_id = ANY(?)
+                RETURNING id, task_id, content, author_id, version
+            )
+            INSERT INTO t.comments_archive (id, task_id, content, author_id, version)
+            SELECT id, task_id, content, author_id, version FROM moved""";
+
+    private static final String DELETE_TASKS = "DELETE FROM t.tasks WHERE id = ANY(?)";
+
+    private static final String LOCK_ARCHIVED = "SELECT id FROM t.tasks_archive WHERE id = ANY(?) %s FOR UPDATE";
+
+    /*
+     * Время завершения сохраняется, чтобы задача, возвращённая из архива без смены статуса,
+     * не оставалась в основной таблице дольше положенного.
+     */
+    private static final String RESTORE_TASKS = """
+            INSERT INTO t.tasks (%1$s, completed_at)
+            SELECT %1$s, completed_at FROM t.tasks_archive WHERE id = ANY(?)
+            RETURNING id, title, executor_id, author_id, version""".formatted(TASK_COLUMNS);
+
+    private static final String RESTORE_COMMENTS = """
+            INSERT INTO t.comments (id, task_id, content, author_id, version)
+            SELECT id, task_id, content, author_id, version FROM t.comments_archive WHERE task_id = ANY(?)""";
+
+    private static final String DELETE_ARCHIVED = "DELETE FROM t.tasks_archive WHERE id = ANY(?)";
+
+    /*
+     * Каждая ветка ограничивается отдельно и читает не больше offset + size + 1 строк по индексу (executor_id, id),
+     * (author_id, id) или первичному ключу, после чего ветки сливаются по ID.
+     */
+    private static final String SELECT_SLICE = """
+            SELECT %1$s FROM (
+                (SELECT %1$s FROM t.tasks WHERE deleting_at IS NULL %2$s ORDER BY id LIMIT ?)
+                UNION ALL
+                (SELECT %1$s FROM t.tasks_archive WHERE true %2$s ORDER BY id LIMIT ?)
+            ) tasks
+            ORDER BY id
+            LIMIT ? OFFSET ?""";
+
+    private static final String COUNT_ARCHIVED = "SELECT count(*) FROM t.tasks_archive WHERE true %s";
+
+    private static final String SELECT_ARCHIVED = "SELECT %s FROM t.tasks_archive WHERE id = ?".formatted(TASK_COLUMNS);
+
+    private static final String SELECT_COMMENTS = """
+            SELECT id, task_id, content, author_id, version FROM t.comments_archive
+            WHERE task_id = ? %s
+            ORDER BY id %s
+            LIMIT ? OFFSET ?""";
+
+    private static final String COUNT_COMMENTS = "SELECT count(*) FROM t.comments_archive WHERE task_id = ?";
+
+    /*
+     * Комментарии удаляются вместе с задачей внешним ключом ON DELETE CASCADE.
+     */
+    private static final String DELETE_ARCHIVED_TASK = "DELETE FROM t.tasks_archive WHERE id = ?";
+
+    private static final RowMapper<TaskTitle> TASK_TITLE_MAPPER = (resultSet, rowNum) -> new TaskTitle(
+            resultSet.getLong(1),
+            resultSet.getString(2),
+            resultSet.getLong(3),
+            resultSet.getLong(4),
+            resultSet.getLong(5));
+
+    private static final RowMapper<TaskResponseDto> TASK_MAPPER = (resultSet, rowNum) -> new TaskResponseDto(
+            resultSet.getLong(1),
+            resultSet.getString(2),
+            resultSet.getString(3),
+            Status.valueOf(resultSet.getString(4)),
+            Priority.valueOf(resultSet.getString(5)),
+            resultSet.getLong(6),
+            resultSet.getLong(7),
+            resultSet.getLong(8));
+
+    private static final RowMapper<Task> ARCHIVED_TASK_MAPPER = (resultSet, rowNum) -> {
+        Task task = new Task();
+        task.setId(resultSet.getLong(1));
+        task.setTitle(resultSet.getString(2));
+        task.setDescription(resultSet.getString(3));
+        task.setStatus(Status.valueOf(resultSet.getString(4)));
+        task.setPriority(Priority.valueOf(resultSet.getString(5)));
+        task.setAuthor(user(resultSet.getLong(6)));
+        task.setExecutor(user(resultSet.getLong(7)));
+        task.setVersion(resultSet.getLong(8));
+        task.setArchived(true);
+        return task;
+    };
+
+    private static final RowMapper<CommentResponseDto> COMMENT_MAPPER = (resultSet, rowNum) -> new CommentResponseDto(
+            resultSet.getLong(1),
+            resultSet.getLong(2),
+            resultSet.getString(3),
+            resultSet.getLong(4),
+            resultSet.getLong(5));
+
+    private final DatabaseSupport databaseSupport;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Архив есть только в PostgreSQL; на остальных СУБД (H2 в тестах) задачи не архивируются.
+     */
+    public boolean isSupported() {
+        return databaseSupport.isPostgreSql();
+    }
+
+    /**
+     * Переносит в архив не больше limit задач, завершённых раньше cutoff, и возвращает их названия и версии.
+     */
+    public List<TaskTitle> archive(Instant cutoff, int limit) {
+        List<TaskTitle> tasks = jdbcTemplate.query(LOCK_COMPLETED, TASK_TITLE_MAPPER, Timestamp.from(cutoff), limit);
+        if (!tasks.isEmpty()) {
+            Long[] idArray = tasks.stream().map(TaskTitle::id).toArray(Long[]::new);
+            jdbcTemplate.update(INSERT_ARCHIVED_TASKS, (Object) idArray);
+            jdbcTemplate.update(MOVE_COMMENTS_TO_ARCHIVE, (Object) idArray);
+            jdbcTemplate.update(DELETE_TASKS, (Object) idArray);
+        }
+        return tasks;
+    }
+
+    /**
+     * Возвращает задачи из архива вместе с комментариями. Если указан исполнитель,
+     * возвращаются только его задачи. Задачи, которых нет в архиве, пропускаются.
+     */
+    public List<TaskTitle> restore(Collection<Long> ids, Long executorId) {
+        List<Long> lockedIds = executorId == null
+                ? jdbcTemplate.queryForList(LOCK_ARCHIVED.formatted(""), Long.class, (Object) ids.toArray(Long[]::new))
+                : jdbcTemplate.queryForList(LOCK_ARCHIVED.formatted("AND executor_id = ?"), Long.class,
+                        ids.toArray(Long[]::new), executorId);
+        if (lockedIds.isEmpty()) {
+            return List.of();
+        }
+        Long[] idArray = lockedIds.toArray(Long[]::new);
+        List<TaskTitle> restored = jdbcTemplate.query(RESTORE_TASKS, TASK_TITLE_MAPPER, (Object) idArray);
+        jdbcTemplate.update(RESTORE_COMMENTS, (Object) idArray);
+        jdbcTemplate.update(DELETE_ARCHIVED, (Object) idArray);
+        return restored;
+    }
+
+    /**
+     * Страница задач из основной таблицы и архива, упорядоченных по ID. Без исполнителя
+     * и автора возвращаются все задачи, afterId задаёт курсор.
+     */
+    public Slice<TaskResponseDto> findSlice(Long executorId, Long authorId, Long afterId, Pageable pageable) {
+        StringBuilder filters = new StringBuilder();
+        List<Object> filterParameters = new ArrayList<>();
+        filter(filters, filterParameters, "executor_id = ?", executorId);
+        filter(filters, filterParameters, "author_id = ?", authorId);
+        filter(filters, filterParameters, "id > ?", afterId);
+
+        long branchLimit = pageable.getOffset() + pageable.getPageSize() + 1;
+        List<Object> parameters = new ArrayList<>(filterParameters);
+        parameters.add(branchLimit);
+        parameters.addAll(filterParameters);
+        parameters.add(branchLimit);
+        parameters.add(pageable.getPageSize() + 1);
+        parameters.add(pageable.getOffset());
+
+        List<TaskResponseDto> tasks = jdbcTemplate.query(SELECT_SLICE.formatted(TASK_COLUMNS, filters), TASK_MAPPER, parameters.toArray());
+        boolean hasNext = tasks.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? tasks.subList(0, pageable.getPageSize()) : tasks, pageable, hasNext);
+    }
+
+    public long count(Long executorId, Long authorId) {
+        StringBuilder filters = new StringBuilder();
+        List<Object> parameters = new ArrayList<>();
+        filter(filters, parameters, "executor_id = ?", executorId);
+        filter(filters, parameters, "author_id = ?", authorId);
+        Long count = jdbcTemplate.queryForObject(COUNT_ARCHIVED.formatted(filters), Long.class, parameters.toArray());
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Архивная задача для чтения. Задача не управляется Hibernate, у исполнителя и автора заполнены только ID.
+     */
+    public Optional<Task> findById(Long id) {
+        return jdbcTemplate.query(SELECT_ARCHIVED, ARCHIVED_TASK_MAPPER, id).stream().findFirst();
+    }
+
+    /**
+     * Страница комментариев архивной задачи по возрастанию ID, как у CommentRepository.findAllByTaskId.
+     */
+    public Slice<CommentResponseDto> findComments(Long taskId, Pageable pageable) {
+        return findComments("", "", pageable, taskId);
+    }
+
+    /**
+     * Комментарии архивной задачи от новых к старым с ID меньше before, как у CommentRepository.findAllByTaskIdBefore.
+     */
+    public Slice<CommentResponseDto> findCommentsBefore(Long taskId, Long before, Pageable pageable) {
+        return findComments("AND id < ?", "DESC", pageable, taskId, before);
+    }
+
+    public long countComments(Long taskId) {
+        Long count = jdbcTemplate.queryForObject(COUNT_COMMENTS, Long.class, taskId);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Удаляет архивную задачу вместе с комментариями.
+     *
+     * @return false, если задачи нет в архиве
+     */
+    public boolean delete(Long id) {
+        return jdbcTemplate.update(DELETE_ARCHIVED_TASK, id) > 0;
+    }
+
+    private Slice<CommentResponseDto> findComments(String filter, String direction, Pageable pageable,
+                                                   Object... filterParameters) {
+        List<Object> parameters = new ArrayList<>(List.of(filterParameters));
+        parameters.add(pageable.getPageSize() + 1);
+        parameters.add(pageable.getOffset());
+        List<CommentResponseDto> comments = jdbcTemplate.query(SELECT_COMMENTS.formatted(filter, direction), COMMENT_MAPPER,
+                parameters.toArray());
+        boolean hasNext = comments.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? comments.subList(0, pageable.getPageSize()) : comments, pageable, hasNext);
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static void filter(StringBuilder filters, List<Object> parameters, String condition, Long value) {
+        if (value != null) {
+            filters.append(" AND ").append(condition);
+            parameters.add(value);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.effectivemobile.tms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.task.TaskImportResultDto;
+import org.effectivemobile.tms.util.importing.TaskImportRow;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Импорт задач через COPY PostgreSQL: записи потоком загружаются во временную таблицу,
+ * после чего исполнители проверяются и задачи вставляются несколькими запросами над всем набором.
+ * Методы должны вызываться внутри транзакции.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TaskCopyRepository {
+
+    public static final int REJECTED_LINES_LIMIT = 100;
+
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final String CREATE_STAGING_TABLE = """
+            CREATE TEMPORARY TABLE task_import (
+                line BIGINT NOT NULL,
+                title TEXT,
+                description TEXT,
+                status TEXT,
+                priority TEXT,
+                executor_id BIGINT
+            ) ON COMMIT DROP""";
+
+    private static final String COPY_STAGING_TABLE =
+            "COPY task_import (line, title, description, status, priority, executor_id) FROM STDIN (FORMAT csv)";
+
+    private static final String SELECT_REJECTED = """
+            SELECT i.line FROM task_import i
+            WHERE NOT EXISTS (SELECT 1 FROM t.users u WHERE u.id = i.executor_id)
+            ORDER BY i.line""";
+
+    /*
+     * ID выделяются блоками по одному nextval на 50 задач, как это делает пул Hibernate:
+     * значение последовательности - верхняя граница блока. Блок, выданный новой последовательности
+     * (значение меньше размера блока), содержит только одно значение и пропускается,
+     * поэтому запрашивается один запасной блок.
+     */
+    private static final String INSERT_TASKS = """
+            WITH valid AS (
+                SELECT i.*, row_number() OVER (ORDER BY i.line) - 1 AS rn
+                FROM task_import i
+                WHERE EXISTS (SELECT 1 FROM t.users u WHERE u.id = i.executor_id)
+            ), allocated AS (
+                SELECT nextval('t.tasks_id_seq') AS hi
+                FROM generate_series(0, (SELECT count(*) FROM valid) / %1$d + 1)
+            ), blocks AS (
+                SELECT row_number() OVER (ORDER BY hi) - 1 AS b, hi FROM allocated WHERE hi >= %1$d
+            )
+            INSERT INTO t.tasks (id, title, description, status, priority, author_id, executor_id)
+            SELECT blocks.hi - %1$d + 1 + v.rn %% %1$d, v.title, v.description, v.status, v.priority, ?, v.executor_id
+            FROM valid v JOIN blocks ON blocks.b = v.rn / %1$d
+            RETURNING id, title, executor_id, author_id, version""".formatted(ID_ALLOCATION_SIZE);
+
+    private final DatabaseSupport databaseSupport;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isSupported() {
+        return databaseSupport.isPostgreSql();
+    }
+
+    /**
+     * Каждая вставленная задача передаётся в inserted.
+     */
+    public TaskImportResultDto copy(Iterator<TaskImportRow> rows, Long authorId, Consumer<TaskImportRow> validator,
+                                   Consumer<TaskTitle> inserted) {
+        jdbcTemplate.execute(CREATE_STAGING_TABLE);
+        long total = copyToStagingTable(rows, validator);
+
+        List<Long> rejectedLines = new ArrayList<>();
+        long[] rejected = {0};
+        jdbcTemplate.query(SELECT_REJECTED, resultSet -> {
+            if (rejected[0]++ < REJECTED_LINES_LIMIT) {
+                rejectedLines.add(resultSet.getLong(1));
+            }
+        });
+        if (rejected[0] < total) {
+            jdbcTemplate.query(INSERT_TASKS, resultSet -> {
+                inserted.accept(new TaskTitle(resultSet.getLong(1), resultSet.getString(2),
+                        resultSet.getLong(3), resultSet.getLong(4), resultSet.getLong(5)));
+            }, authorId);
+        }
+        return new TaskImportResultDto(total - rejected[0], rejected[0], rejectedLines);
+    }
+
+    private long copyToStagingTable(Iterator<TaskImportRow> rows, Consumer<TaskImportRow> validator) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_TABLE);
+            long total = 0;
+            try {
+                while (rows.hasNext()) {
+                    TaskImportRow row = rows.next();
+                    validator.accept(row);
+                    byte[] bytes = toCsv(row).getBytes(StandardCharsets.UTF_8);
+                    copyIn.writeToCopy(bytes, 0, bytes.length);
+                    total++;
+                }
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            return total;
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Не удалось загрузить задачи во временную таблицу", ex);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static String toCsv(TaskImportRow row) {
+        return row.line() + "," + quote(row.task().getTitle()) + "," + quote(row.task().getDescription()) + ","
+                + row.status().name() + "," + row.task().getPriority().name() + "," + row.task().getExecutorId() + "\n";
+    }
+
+    /**
+     * В формате CSV команды COPY пустое значение без кавычек означает NULL.
+     */
+    private static String quote(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
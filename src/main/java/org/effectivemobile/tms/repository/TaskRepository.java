@@ -3,7 +3,15 @@ package org.effectivemobile.tms.repository;
 import org.effectivemobile.tms.entity.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
-public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task> {
+import java.util.List;
 
+public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task>, TaskRepositoryCustom {
+
+    /**
+     * ID задач, поставленных на фоновое удаление, в порядке постановки.
+     */
+    @Query("select t.id from Task t where t.deletingAt is not null order by t.deletingAt")
+    List<Long> findDeletingIds();
 }
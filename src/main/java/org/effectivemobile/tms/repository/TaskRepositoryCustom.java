@@ -0,0 +1,62 @@
+package org.effectivemobile.tms.repository;
+
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
+import org.effectivemobile.tms.entity.Task;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface TaskRepositoryCustom {
+
+    /**
+     * Выборка без запроса count(*): загружается на одну строку больше размера страницы,
+     * чтобы определить наличие следующей страницы. ID автора и исполнителя читаются
+     * из внешних ключей, связанные пользователи не загружаются.
+     */
+    Slice<TaskResponseDto> findSlice(Specification<Task> spec, Pageable pageable);
+
+    /**
+     * Потоковое чтение задач в порядке ID через серверный курсор. Поток должен
+     * потребляться и закрываться внутри транзакции.
+     */
+    Stream<TaskResponseDto> streamAll(Specification<Task> spec);
+
+    /**
+     * Потоковое чтение комментариев к задачам, удовлетворяющим спецификации,
+     * в порядке ID задачи и ID комментария.
+     */
+    Stream<CommentResponseDto> streamComments(Specification<Task> spec);
+
+    /**
+     * Меняет статус задач одним запросом и возвращает ID фактически обновлённых задач.
+     * Обновлённые задачи удаляются из кэша второго уровня.
+     */
+    List<Long> updateStatus(Collection<Long> ids, String status);
+
+    /**
+     * То же, что {@link #updateStatus}, но затрагивает только задачи указанного исполнителя.
+     */
+    List<Long> updateStatusByExecutor(Collection<Long> ids, String status, Long executorId);
+
+    /**
+     * Записывает непустые поля изменений одним UPDATE и возвращает новое состояние задачи.
+     * Если указан исполнитель, изменяется только его задача, если указаны версии — только задача
+     * с одной из них. Пустой результат означает, что под условия не подошла ни одна строка.
+     * Задача удаляется из кэша второго уровня.
+     */
+    Optional<TaskResponseDto> update(Long id, TaskUpdateRequestDto changes, Long executorId, Collection<Long> versions);
+
+    /**
+     * Полнотекстовый поиск по названию, описанию и комментариям задач (только PostgreSQL).
+     * Запрос разбирается как websearch_to_tsquery, результаты упорядочены по релевантности,
+     * фильтры по исполнителю и автору необязательны. Выборка без count(*), как в {@link #findSlice}.
+     */
+    Slice<TaskResponseDto> search(String query, Long executorId, Long authorId, Pageable pageable);
+}
@@ -0,0 +1,272 @@
+package org.effectivemobile.tms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
+import org.effectivemobile.tms.entity.Comment;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Status;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class TaskRepositoryImpl implements TaskRepositoryCustom {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final String TASK_COLUMNS = "id, title, description, status, priority, author_id, executor_id, version";
+
+    private static final String SEARCH = """
+            SELECT %1$s FROM (
+                SELECT id, sum(rank) AS rank FROM (
+                    SELECT id, ts_rank_cd(search_vector, query) AS rank
+                    FROM t.tasks, websearch_to_tsquery('russian', :query) query
+                    WHERE search_vector @@ query%2$s
+                    UNION ALL
+                    SELECT task_id, ts_rank_cd(search_vector, query)
+                    FROM t.comments, websearch_to_tsquery('russian', :query) query
+                    WHERE search_vector @@ query%3$s
+                ) matches
+                GROUP BY id
+            ) matches
+            JOIN t.tasks USING (id)
+            WHERE deleting_at IS NULL
+            ORDER BY rank DESC, id""";
+
+    private final DatabaseSupport databaseSupport;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<TaskResponseDto> findSlice(Specification<Task> spec, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TaskResponseDto> query = criteriaBuilder.createQuery(TaskResponseDto.class);
+        Root<Task> root = query.from(Task.class);
+        selectTasks(query, root, spec, criteriaBuilder);
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+
+        List<TaskResponseDto> tasks = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = tasks.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? tasks.subList(0, pageable.getPageSize()) : tasks, pageable, hasNext);
+    }
+
+    @Override
+    public Stream<TaskResponseDto> streamAll(Specification<Task> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TaskResponseDto> query = criteriaBuilder.createQuery(TaskResponseDto.class);
+        Root<Task> root = query.from(Task.class);
+        selectTasks(query, root, spec, criteriaBuilder);
+        query.orderBy(criteriaBuilder.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<CommentResponseDto> streamComments(Specification<Task> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CommentResponseDto> query = criteriaBuilder.createQuery(CommentResponseDto.class);
+        Root<Comment> root = query.from(Comment.class);
+        query.select(criteriaBuilder.construct(CommentResponseDto.class,
+                root.get("id"),
+                root.get("task").get("id"),
+                root.get("content"),
+                root.get("author").get("id"),
+                root.get("version")));
+
+        Subquery<Long> taskIds = query.subquery(Long.class);
+        Root<Task> task = taskIds.from(Task.class);
+        taskIds.select(task.get("id"));
+        Predicate predicate = spec.toPredicate(task, query, criteriaBuilder);
+        if (predicate != null) {
+            taskIds.where(predicate);
+        }
+        query.where(root.get("task").get("id").in(taskIds));
+        query.orderBy(criteriaBuilder.asc(root.get("task").get("id")), criteriaBuilder.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<Long> updateStatus(Collection<Long> ids, String status) {
+        List<Long> updated = getResultIds(entityManager.createNativeQuery(
+                        "UPDATE t.tasks SET status = :status, version = version + 1 WHERE id IN (:ids) AND deleting_at IS NULL RETURNING id")
+                .setParameter("ids", ids)
+                .setParameter("status", status));
+        evict(updated);
+        return updated;
+    }
+
+    @Override
+    public List<Long> updateStatusByExecutor(Collection<Long> ids, String status, Long executorId) {
+        List<Long> updated = getResultIds(entityManager.createNativeQuery(
+                        "UPDATE t.tasks SET status = :status, version = version + 1 WHERE id IN (:ids) AND executor_id = :executorId AND deleting_at IS NULL RETURNING id")
+                .setParameter("ids", ids)
+                .setParameter("status", status)
+                .setParameter("executorId", executorId));
+        evict(updated);
+        return updated;
+    }
+
+    /**
+     * В PostgreSQL новое состояние задачи возвращается тем же запросом через RETURNING.
+     * Для БД без RETURNING (H2 в тестах) строка дочитывается отдельным запросом.
+     */
+    @Override
+    public Optional<TaskResponseDto> update(Long id, TaskUpdateRequestDto changes, Long executorId, Collection<Long> versions) {
+        StringBuilder sql = new StringBuilder("UPDATE t.tasks SET version = version + 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        set(sql, parameters, "title", changes.getTitle());
+        set(sql, parameters, "description", changes.getDescription());
+        set(sql, parameters, "status", changes.getStatus() == null ? null : changes.getStatus().name());
+        set(sql, parameters, "priority", changes.getPriority() == null ? null : changes.getPriority().name());
+        set(sql, parameters, "executor_id", changes.getExecutorId());
+        sql.append(" WHERE id = :id AND deleting_at IS NULL");
+        parameters.put("id", id);
+        if (executorId != null) {
+            sql.append(" AND executor_id = :currentExecutorId");
+            parameters.put("currentExecutorId", executorId);
+        }
+        if (versions != null) {
+            sql.append(" AND version IN (:versions)");
+            parameters.put("versions", versions);
+        }
+
+        Optional<TaskResponseDto> task;
+        if (databaseSupport.isPostgreSql()) {
+            sql.append(" RETURNING ").append(TASK_COLUMNS);
+            task = getResultTasks(bind(entityManager.createNativeQuery(sql.toString()), parameters)).stream().findFirst();
+        } else if (bind(entityManager.createNativeQuery(sql.toString()), parameters).executeUpdate() > 0) {
+            task = getResultTasks(entityManager.createNativeQuery("SELECT " + TASK_COLUMNS + " FROM t.tasks WHERE id = :id")
+                    .setParameter("id", id)).stream().findFirst();
+        } else {
+            task = Optional.empty();
+        }
+        task.ifPresent(updated -> evict(List.of(updated.getId())));
+        return task;
+    }
+
+    private static void set(StringBuilder sql, Map<String, Object> parameters, String column, Object value) {
+        if (value != null) {
+            sql.append(", ").append(column).append(" = :").append(column);
+            parameters.put(column, value);
+        }
+    }
+
+    private static Query bind(Query query, Map<String, Object> parameters) {
+        parameters.forEach(query::setParameter);
+        return query;
+    }
+
+    /**
+     * Задачи и комментарии индексируются отдельно: задача находится по своему вектору или по векторам
+     * комментариев, её ранг - сумма рангов совпадений. Фильтры применяются в обеих ветках, чтобы
+     * совпадения в чужих задачах отбрасывались до группировки.
+     */
+    @Override
+    public Slice<TaskResponseDto> search(String query, Long executorId, Long authorId, Pageable pageable) {
+        StringBuilder filters = new StringBuilder();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("query", query);
+        if (executorId != null) {
+            filters.append(" AND executor_id = :executorId");
+            parameters.put("executorId", executorId);
+        }
+        if (authorId != null) {
+            filters.append(" AND author_id = :authorId");
+            parameters.put("authorId", authorId);
+        }
+        String sql = SEARCH.formatted(TASK_COLUMNS, filters,
+                filters.isEmpty() ? "" : " AND task_id IN (SELECT id FROM t.tasks WHERE true" + filters + ")");
+
+        List<TaskResponseDto> tasks = getResultTasks(bind(entityManager.createNativeQuery(sql), parameters)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1));
+        boolean hasNext = tasks.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? tasks.subList(0, pageable.getPageSize()) : tasks, pageable, hasNext);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<TaskResponseDto> getResultTasks(Query query) {
+        return ((List<Object[]>) query.getResultList()).stream().map(row -> new TaskResponseDto(
+                ((Number) row[0]).longValue(),
+                (String) row[1],
+                (String) row[2],
+                Status.valueOf((String) row[3]),
+                Priority.valueOf((String) row[4]),
+                ((Number) row[5]).longValue(),
+                ((Number) row[6]).longValue(),
+                ((Number) row[7]).longValue())).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> getResultIds(Query query) {
+        return ((List<Number>) query.getResultList()).stream().map(Number::longValue).toList();
+    }
+
+    /**
+     * Изменения, сделанные в обход Hibernate, не попадают в кэш второго уровня,
+     * поэтому затронутые задачи удаляются из него явно. Удаление повторяется после
+     * завершения транзакции: до фиксации параллельное чтение может вернуть в кэш старую строку.
+     */
+    private void evict(Collection<Long> ids) {
+        javax.persistence.Cache cache = entityManager.getEntityManagerFactory().getCache();
+        ids.forEach(id -> cache.evict(Task.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(Task.class, id));
+                }
+            });
+        }
+    }
+
+    private static void selectTasks(CriteriaQuery<TaskResponseDto> query, Root<Task> root, Specification<Task> spec,
+                                    CriteriaBuilder criteriaBuilder) {
+        query.select(criteriaBuilder.construct(TaskResponseDto.class,
+                root.get("id"),
+                root.get("title"),
+                root.get("description"),
+                root.get("status"),
+                root.get("priority"),
+                root.get("author").get("id"),
+                root.get("executor").get("id"),
+                root.get("version")));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.effectivemobile.tms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.statistics.TaskCount;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Количество задач по статусам и приоритетам. На PostgreSQL читается как сумма строк t.task_counters
+ * и журнала t.task_counter_deltas, в который триггеры на t.tasks и t.tasks_archive дописывают изменения
+ * в той же транзакции, что и сами задачи, поэтому архивные задачи тоже учитываются. Задачи, поставленные
+ * на фоновое удаление, не учитываются, как и при чтении задач.
+ * Журнал периодически сворачивается в t.task_counters, чтобы чтение оставалось коротким.
+ * На остальных СУБД (H2 в тестах) счётчиков нет, и количество считается группировкой задач.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TaskStatisticsRepository {
+
+    private static final String EXECUTOR = "E";
+    private static final String AUTHOR = "A";
+    private static final String TOTAL = "T";
+    private static final long TOTAL_USER_ID = 0;
+
+    private static final String SELECT_COUNTERS = """
+            SELECT status, priority, sum(count) FROM (
+                SELECT status, priority, count FROM t.task_counters WHERE dimension = ? AND user_id = ?
+                UNION ALL
+                SELECT status, priority, delta FROM t.task_counter_deltas WHERE dimension = ? AND user_id = ?
+            ) counters
+            GROUP BY status, priority""";
+
+    /**
+     * Строки журнала, добавленные после начала свёртки, остаются до следующей.
+     * Строки счётчиков блокируются в порядке ключа, чтобы свёртки нескольких экземпляров приложения
+     * не взаимоблокировались.
+     */
+    private static final String FOLD_DELTAS = """
+            WITH deltas AS (
+                DELETE FROM t.task_counter_deltas RETURNING dimension, user_id, status, priority, delta
+            )
+            INSERT INTO t.task_counters AS c (dimension, user_id, status, priority, count)
+            SELECT dimension, user_id, status, priority, sum(delta) FROM deltas
+            GROUP BY dimension, user_id, status, priority
+            HAVING sum(delta) <> 0
+            ORDER BY dimension, user_id, status, priority
+            ON CONFLICT (dimension, user_id, status, priority) DO UPDATE SET count = c.count + EXCLUDED.count""";
+
+    private static final String SELECT_TASKS =
+            "SELECT status, priority, count(*) FROM t.tasks WHERE deleting_at IS NULL %s GROUP BY status, priority";
+
+    /**
+     * Счётчики учитывают и архивные задачи, но не задачи, поставленные на фоновое удаление.
+     * Расхождение - разница между количеством задач и суммой счётчика с журналом; она дописывается
+     * в журнал исправляющими строками. Запрос читает задачи, счётчики и журнал из одного снимка,
+     * поэтому изменения, зафиксированные во время пересчёта, не искажают разницу и не блокируются.
+     */
+    private static final String INSERT_DRIFT = """
+            WITH all_tasks AS (
+                SELECT executor_id, author_id, status, priority FROM t.tasks WHERE deleting_at IS NULL
+                UNION ALL
+                SELECT executor_id, author_id, status, priority FROM t.tasks_archive
+            )
+            INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+            SELECT dimension, user_id, status, priority, sum(delta) FROM (
+                SELECT 'E' AS dimension, executor_id AS user_id, status, priority, count(*) AS delta
+                FROM all_tasks GROUP BY executor_id, status, priority
+                UNION ALL
+                SELECT 'A', author_id, status, priority, count(*) FROM all_tasks GROUP BY author_id, status, priority
+                UNION ALL
+                SELECT 'T', 0, status, priority, count(*) FROM all_tasks GROUP BY status, priority
+                UNION ALL
+                SELECT dimension, user_id, status, priority, -count FROM t.task_counters
+                UNION ALL
+                SELECT dimension, user_id, status, priority, -delta FROM t.task_counter_deltas
+            ) d
+            GROUP BY dimension, user_id, status, priority
+            HAVING sum(delta) <> 0""";
+
+    private static final RowMapper<TaskCount> TASK_COUNT_MAPPER = (resultSet, rowNum) -> new TaskCount(
+            Status.valueOf(resultSet.getString(1)), Priority.valueOf(resultSet.getString(2)), resultSet.getLong(3));
+
+    private final DatabaseSupport databaseSupport;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Без ID исполнителя возвращает количество всех задач из отдельных счётчиков по всем задачам.
+     */
+    public List<TaskCount> countByExecutor(Long executorId) {
+        return executorId == null ? count(TOTAL, null, TOTAL_USER_ID) : count(EXECUTOR, "executor_id", executorId);
+    }
+
+    public List<TaskCount> countByAuthor(Long authorId) {
+        return count(AUTHOR, "author_id", authorId);
+    }
+
+    /**
+     * Переносит накопленный журнал изменений в счётчики. Изменение задач не блокируется.
+     */
+    public void fold() {
+        if (databaseSupport.isPostgreSql()) {
+            jdbcTemplate.update(FOLD_DELTAS);
+        }
+    }
+
+    /**
+     * Пересчитывает счётчики по задачам и возвращает количество исправленных. Исправления дописываются
+     * в журнал, поэтому пересчёт не блокирует ни изменение задач, ни свёртку.
+     */
+    public long reconcile() {
+        if (!databaseSupport.isPostgreSql()) {
+            return 0;
+        }
+        return jdbcTemplate.update(INSERT_DRIFT);
+    }
+
+    private List<TaskCount> count(String dimension, String column, Long userId) {
+        if (databaseSupport.isPostgreSql()) {
+            return jdbcTemplate.query(SELECT_COUNTERS, TASK_COUNT_MAPPER, dimension, userId, dimension, userId);
+        }
+        return column == null
+                ? jdbcTemplate.query(SELECT_TASKS.formatted(""), TASK_COUNT_MAPPER)
+                : jdbcTemplate.query(SELECT_TASKS.formatted("AND " + column + " = ?"), TASK_COUNT_MAPPER, userId);
+    }
+}
@@ -0,0 +1,77 @@
+package org.effectivemobile.tms.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.entity.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Вставка пользователей пачками на PostgreSQL: каждая пачка - один INSERT по массивам имён и хэшей паролей.
+ * Имена, занятые к моменту вставки, пропускаются (ON CONFLICT DO NOTHING), а не прерывают всю пачку.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserBatchRepository {
+
+    public static final int BATCH_SIZE = 100;
+
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    /*
+     * ID выделяются блоками так же, как при импорте задач (см. TaskCopyRepository),
+     * чтобы не пересекаться с блоками, которые Hibernate получает из той же последовательности.
+     */
+    private static final String INSERT_USERS = """
+            WITH input AS (
+                SELECT i.username, i.password, i.ord - 1 AS rn
+                FROM unnest(?::text[], ?::text[]) WITH ORDINALITY AS i (username, password, ord)
+            ), allocated AS (
+                SELECT nextval('t.users_id_seq') AS hi
+                FROM generate_series(0, (SELECT count(*) FROM input) / %1$d + 1)
+            ), blocks AS (
+                SELECT row_number() OVER (ORDER BY hi) - 1 AS b, hi FROM allocated WHERE hi >= %1$d
+            )
+            INSERT INTO t.users (id, username, password, role)
+            SELECT blocks.hi - %1$d + 1 + i.rn %% %1$d, i.username, i.password, ?
+            FROM input i JOIN blocks ON blocks.b = i.rn / %1$d
+            ON CONFLICT (username) DO NOTHING
+            RETURNING id, username""".formatted(ID_ALLOCATION_SIZE);
+
+    private final DatabaseSupport databaseSupport;
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isSupported() {
+        return databaseSupport.isPostgreSql();
+    }
+
+    /**
+     * Возвращает ID вставленных пользователей по именам. Пользователей, которых нет в результате,
+     * успели создать другим запросом. Метод должен вызываться внутри транзакции, чтобы пачки фиксировались вместе.
+     */
+    public Map<String, Long> insertAll(List<User> users) {
+        Map<String, Long> ids = new HashMap<>();
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<User> batch = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+            jdbcTemplate.query(connection -> prepareInsert(connection, batch),
+                    resultSet -> {
+                        ids.put(resultSet.getString(2), resultSet.getLong(1));
+                    });
+        }
+        return ids;
+    }
+
+    private static PreparedStatement prepareInsert(Connection connection, List<User> users) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(INSERT_USERS);
+        statement.setArray(1, connection.createArrayOf("text", users.stream().map(User::getUsername).toArray()));
+        statement.setArray(2, connection.createArrayOf("text", users.stream().map(User::getPassword).toArray()));
+        statement.setString(3, users.get(0).getRole().name());
+        return statement;
+    }
+}
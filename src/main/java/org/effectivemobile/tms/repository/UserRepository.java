@@ -1,15 +1,22 @@
 package org.effectivemobile.tms.repository;
 
 import org.effectivemobile.tms.entity.User;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    Page<User> findAll(Pageable pageable);
+    Slice<User> findAllBy(Pageable pageable);
 
     Optional<User> findByUsername(String username);
+
+    @Query("select u.username from User u where u.username in :usernames")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
 }
@@ -3,30 +3,50 @@ package org.effectivemobile.tms.service;
 import lombok.RequiredArgsConstructor;
 import org.effectivemobile.tms.dto.user.UserAuthRequestDto;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.jwt.AuthTokens;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Регистрация и вход выполняются в пуле хэширования паролей, а не в потоке запроса.
+ * При входе хэш, созданный с меньшей стоимостью, чем настроенная, заменяется новым.
+ * Вместе с JWT выдаётся токен обновления, по которому JWT продлевается без проверки пароля.
+ */
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final UserService userService;
-    private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
     private final AuthenticationManager authenticationManager;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+
+    public CompletableFuture<AuthTokens> signUp(UserAuthRequestDto dto) {
+        return passwordHashingService.submit(() -> {
+            dto.setPassword(passwordEncoder.encode(dto.getPassword()));
+            userService.create(dto);
+            User user = userService.loadUserByUsername(dto.getUsername());
+            return refreshTokenService.issue(user);
+        });
+    }
 
-    public String signUp(UserAuthRequestDto dto) {
-        dto.setPassword(passwordEncoder.encode(dto.getPassword()));
-        userService.create(dto);
-        User user = userService.loadUserByUsername(dto.getUsername());
-        return jwtService.generateToken(user);
+    public CompletableFuture<AuthTokens> signIn(UserAuthRequestDto dto) {
+        return passwordHashingService.submit(() -> {
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(dto.getUsername(), dto.getPassword()));
+            User user = userService.loadUserByUsername(dto.getUsername());
+            return refreshTokenService.issue(user);
+        });
     }
 
-    public String signIn(UserAuthRequestDto dto) {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(dto.getUsername(), dto.getPassword()));
-        User user = userService.loadUserByUsername(dto.getUsername());
-        return jwtService.generateToken(user);
+    /**
+     * Продление доступа без BCrypt, поэтому выполняется в потоке запроса.
+     */
+    public AuthTokens refresh(String refreshToken) {
+        return refreshTokenService.refresh(refreshToken);
     }
 }
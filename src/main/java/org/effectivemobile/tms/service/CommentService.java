@@ -1,24 +1,36 @@
 package org.effectivemobile.tms.service;
 
 import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.config.CacheConfig;
 import org.effectivemobile.tms.dto.comment.CommentRequestDto;
 import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.comment.CommentVersionDto;
 import org.effectivemobile.tms.entity.Comment;
 import org.effectivemobile.tms.entity.Task;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.ConflictException;
 import org.effectivemobile.tms.mapper.CommentMapper;
 import org.effectivemobile.tms.repository.CommentRepository;
+import org.effectivemobile.tms.repository.DatabaseSupport;
+import org.effectivemobile.tms.repository.TaskArchiveRepository;
 import org.effectivemobile.tms.repository.TaskRepository;
 import org.effectivemobile.tms.util.enums.Role;
-import org.springframework.data.domain.Page;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.pagination.CursorUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityNotFoundException;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -28,14 +40,70 @@ public class CommentService {
     private final TaskRepository taskRepository;
     private final UserService userService;
     private final CommentMapper commentMapper;
+    private final CacheManager cacheManager;
+    private final DatabaseSupport databaseSupport;
+    private final TaskArchiveRepository taskArchiveRepository;
 
+    /**
+     * Комментарии архивной задачи читаются из архива, здесь и в остальных методах чтения.
+     */
     public List<CommentResponseDto> getAll(Long taskId, Integer page, Integer size) {
         User user = userService.getCurrentUser();
-        Task task = getTask(taskId);
+        Task task = findTask(taskId);
+        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
+            Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+            return task.isArchived()
+                    ? taskArchiveRepository.findComments(taskId, pageable).getContent()
+                    : commentRepository.findAllByTaskId(taskId, pageable).getContent();
+        }
+        throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
+    }
+
+    /**
+     * Комментарии старше курсора, от новых к старым. Курсор берётся из детальной информации о задаче
+     * или из заголовка X-Next-Cursor предыдущего ответа.
+     */
+    public Slice<CommentResponseDto> getAllBefore(Long taskId, String before, Integer size) {
+        User user = userService.getCurrentUser();
+        Task task = findTask(taskId);
         if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
-            Pageable pageable = PageRequest.of(page, size);
-            Page<Comment> comments = commentRepository.findAllByTaskId(taskId, pageable);
-            return comments.stream().map(commentMapper::entityToResponseDto).toList();
+            return task.isArchived()
+                    ? taskArchiveRepository.findCommentsBefore(taskId, CursorUtils.decode(before), PageRequest.of(0, size))
+                    : commentRepository.findAllByTaskIdBefore(taskId, CursorUtils.decode(before), PageRequest.of(0, size));
+        }
+        throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
+    }
+
+    /**
+     * ETag страницы комментариев строится по ревизии комментариев задачи, которую триггеры увеличивают
+     * при каждом добавлении, изменении и удалении её комментариев. На СУБД без этих триггеров (H2 в тестах)
+     * ревизию заменяют количество, максимальный ID и сумма версий комментариев задачи.
+     * Позиция - номер страницы или курсор.
+     */
+    public String getETag(Long taskId, Object position, Integer size) {
+        User user = userService.getCurrentUser();
+        Task task = findTask(taskId);
+        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
+            if (databaseSupport.isPostgreSql()) {
+                return ETagUtils.of(taskId, commentRepository.findRevisionByTaskId(taskId), position, size);
+            }
+            CommentVersionDto version = commentRepository.findVersionByTaskId(taskId);
+            return ETagUtils.of(taskId, version.getCount(), version.getMaxId(), version.getVersionSum(), position, size);
+        }
+        throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
+    }
+
+    /**
+     * Количество комментариев берётся из кэша с коротким временем жизни и может немного отставать от БД.
+     */
+    public long count(Long taskId) {
+        User user = userService.getCurrentUser();
+        Task task = findTask(taskId);
+        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
+            Cache counts = cacheManager.getCache(CacheConfig.COUNTS_CACHE);
+            return counts.get("comments:" + taskId, () -> task.isArchived()
+                    ? taskArchiveRepository.countComments(taskId)
+                    : commentRepository.countByTaskId(taskId));
         }
         throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
     }
@@ -56,14 +124,17 @@ public class CommentService {
     }
 
     @Transactional
-    public CommentResponseDto update(Long taskId, Long commentId, CommentRequestDto dto) {
+    public CommentResponseDto update(Long taskId, Long commentId, CommentRequestDto dto, String ifMatch) {
         User user = userService.getCurrentUser();
         Task task = getTask(taskId);
         Comment comment = getComment(commentId);
         if (user.getRole() == Role.ADMIN || user.equals(comment.getAuthor())) {
-            if (comment.getTask().equals(task)) {
+            if (comment.getTask().getId().equals(task.getId())) {
+                if (!ETagUtils.matches(ifMatch, ETagUtils.of(comment.getId(), comment.getVersion()))) {
+                    throw new OptimisticLockingFailureException("Комментарий был изменён другим пользователем");
+                }
                 comment.setContent(dto.getContent());
-                commentRepository.save(comment);
+                commentRepository.saveAndFlush(comment);
                 return commentMapper.entityToResponseDto(comment);
             }
             throw new EntityNotFoundException("Комментарий не относится к этой задаче");
@@ -77,7 +148,7 @@ public class CommentService {
         Task task = getTask(taskId);
         Comment comment = getComment(commentId);
         if (user.getRole() == Role.ADMIN || user.equals(comment.getAuthor())) {
-            if (comment.getTask().equals(task)) {
+            if (comment.getTask().getId().equals(task.getId())) {
                 commentRepository.delete(comment);
                 return;
             }
@@ -86,8 +157,25 @@ public class CommentService {
         throw new AccessDeniedException("Вы не являетесь автором комментария или администратором");
     }
 
+    /**
+     * Задача из основной таблицы или архива. Комментарии задачи, поставленной на фоновое удаление, недоступны.
+     */
+    private Task findTask(Long taskId) {
+        return taskRepository.findById(taskId)
+                .filter(task -> task.getDeletingAt() == null)
+                .or(() -> taskArchiveRepository.isSupported() ? taskArchiveRepository.findById(taskId) : Optional.empty())
+                .orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
+    }
+
+    /**
+     * Комментарии архивной задачи доступны только для чтения.
+     */
     private Task getTask(Long taskId) {
-        return taskRepository.findById(taskId).orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
+        Task task = findTask(taskId);
+        if (task.isArchived()) {
+            throw new ConflictException("Задача находится в архиве, её комментарии доступны только для чтения");
+        }
+        return task;
     }
 
     private Comment getComment(Long commentId) {
@@ -1,57 +1,147 @@
 package org.effectivemobile.tms.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import org.springframework.security.core.userdetails.UserDetails;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.jwt.JwtClaims;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.HexFormat;
+import java.util.Optional;
 
 @Service
 public class JwtService {
 
     private static final SecretKey SECRET_KEY = Jwts.SIG.HS256.key().build();
     private static final int EXPIRATION_TIME = 1000 * 60 * 60;
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
 
-    public String generateToken(UserDetails userDetails) {
-        return Jwts.builder()
-                .subject(userDetails.getUsername())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(SECRET_KEY, Jwts.SIG.HS256)
-                .compact();
+    private final JwtParser parser = Jwts.parser().verifyWith(SECRET_KEY).build();
+    private final Timer verifyTimer;
+    private final Cache<String, JwtClaims> claimsCache;
+    private final boolean selfContained;
+
+    public JwtService(MeterRegistry meterRegistry,
+                      @Value("${tms.jwt.self-contained}") boolean selfContained,
+                      @Value("${tms.jwt.claims-cache.enabled}") boolean claimsCacheEnabled,
+                      @Value("${tms.jwt.claims-cache.maximum-size}") long claimsCacheMaximumSize) {
+        this.selfContained = selfContained;
+        this.verifyTimer = Timer.builder("jwt.verify")
+                .description("Время проверки подписи и разбора JWT")
+                .register(meterRegistry);
+        if (claimsCacheEnabled) {
+            this.claimsCache = Caffeine.newBuilder()
+                    .maximumSize(claimsCacheMaximumSize)
+                    .expireAfter(new ExpireAtTokenExpiration())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, claimsCache, "jwtClaims");
+        } else {
+            this.claimsCache = null;
+        }
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return !isTokenExpired(token) && (username.equals(userDetails.getUsername()));
+    public String generateToken(User user) {
+        JwtBuilder builder = Jwts.builder()
+                .subject(user.getUsername())
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME));
+        if (selfContained) {
+            builder.claim(USER_ID_CLAIM, user.getId()).claim(ROLE_CLAIM, user.getRole().name());
+        }
+        return builder.signWith(SECRET_KEY, Jwts.SIG.HS256).compact();
     }
-    private boolean isTokenExpired(String token) {
-        return extractClaim(token, Claims::getExpiration).before(new Date());
+
+    /**
+     * В самодостаточном режиме ID и роль пользователя берутся из токена без обращения к БД,
+     * поэтому смена роли вступает в силу только после выпуска нового токена.
+     */
+    public boolean isSelfContained() {
+        return selfContained;
     }
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его утверждения.
+     * Пустой результат означает, что токен недействителен. Подписанный токен без имени пользователя,
+     * времени выпуска или срока действия тоже считается недействительным.
+     */
+    public Optional<JwtClaims> verify(String token) {
+        if (claimsCache == null) {
+            return Optional.ofNullable(parse(token));
+        }
+        String key = digest(token);
+        JwtClaims claims = claimsCache.getIfPresent(key);
+        if (claims == null) {
+            claims = parse(token);
+            if (claims != null) {
+                claimsCache.put(key, claims);
+            }
+        } else if (claims.isExpired(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(claims);
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolvers) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolvers.apply(claims);
+    private JwtClaims parse(String token) {
+        return verifyTimer.record(() -> {
+            try {
+                Claims claims = parser.parseSignedClaims(token).getPayload();
+                if (claims.getSubject() == null || claims.getSubject().isEmpty()
+                        || claims.getIssuedAt() == null || claims.getExpiration() == null) {
+                    return null;
+                }
+                String role = claims.get(ROLE_CLAIM, String.class);
+                return new JwtClaims(claims.getSubject(), claims.getIssuedAt().toInstant(), claims.getExpiration().toInstant(),
+                        claims.get(USER_ID_CLAIM, Long.class), role == null ? null : Role.valueOf(role));
+            } catch (JwtException | IllegalArgumentException ex) {
+                return null;
+            }
+        });
     }
 
-    private Claims extractAllClaims(String token) {
+    private static String digest(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(SECRET_KEY)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-        } catch (ExpiredJwtException ex) {
-            return ex.getClaims();
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
         }
     }
 
+    private static class ExpireAtTokenExpiration implements Expiry<String, JwtClaims> {
+
+        @Override
+        public long expireAfterCreate(String key, JwtClaims claims, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), claims.expiration()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
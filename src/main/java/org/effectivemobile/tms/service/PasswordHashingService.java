@@ -0,0 +1,92 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет операции с хэшированием паролей (BCrypt) в отдельном пуле потоков ограниченного размера
+ * с ограниченной очередью, чтобы всплеск входов и регистраций не занимал потоки обработки запросов.
+ * Размер очереди и число выполняемых задач публикуются в метриках executor.* с тегом name=passwordHashing.
+ * Пакетные операции выполняются в отдельном пуле ForkJoin (name=passwordHashingBulk) с ограниченным
+ * параллелизмом, чтобы создание сотен пользователей не занимало очередь входов. Число одновременно
+ * выполняемых пакетов ограничено; лишний пакет отклоняется так же, как вход при заполненной очереди.
+ */
+@Service
+public class PasswordHashingService implements DisposableBean {
+
+    private final ExecutorService executor;
+    private final ForkJoinPool bulkPool;
+    private final Semaphore bulkPermits;
+
+    public PasswordHashingService(MeterRegistry meterRegistry,
+                                  @Value("${tms.security.password-hashing.threads}") int threads,
+                                  @Value("${tms.security.password-hashing.queue-capacity}") int queueCapacity,
+                                  @Value("${tms.security.password-hashing.bulk-parallelism}") int bulkParallelism,
+                                  @Value("${tms.security.password-hashing.bulk-concurrency}") int bulkConcurrency) {
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new PasswordHashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "passwordHashing");
+        this.bulkPool = new ForkJoinPool(bulkParallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false);
+        new ExecutorServiceMetrics(bulkPool, "passwordHashingBulk", Tags.empty()).bindTo(meterRegistry);
+        this.bulkPermits = new Semaphore(bulkConcurrency);
+    }
+
+    /**
+     * Если пул и очередь заполнены, сразу выбрасывает {@link RejectedExecutionException}.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * Применяет операцию ко всем элементам параллельно и возвращает результаты в исходном порядке.
+     * Вызывающий поток ждёт завершения; исключение операции выбрасывается как есть.
+     * Если уже выполняется предельное число пакетов, сразу выбрасывает {@link RejectedExecutionException}.
+     */
+    public <T, R> List<R> mapAll(List<T> items, Function<T, R> operation) {
+        if (!bulkPermits.tryAcquire()) {
+            throw new RejectedExecutionException("Превышено число одновременных пакетных операций с паролями");
+        }
+        try {
+            return bulkPool.submit(() -> items.parallelStream().map(operation).toList()).join();
+        } finally {
+            bulkPermits.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        bulkPool.shutdown();
+    }
+
+    private static class PasswordHashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
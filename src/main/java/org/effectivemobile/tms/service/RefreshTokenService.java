@@ -0,0 +1,113 @@
+package org.effectivemobile.tms.service;
+
+import org.effectivemobile.tms.entity.RefreshToken;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.InvalidRefreshTokenException;
+import org.effectivemobile.tms.repository.RefreshTokenRepository;
+import org.effectivemobile.tms.util.jwt.AuthTokens;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Выдача и обмен токенов обновления. Токен - 256 случайных бит, в БД хранится только его SHA-256.
+ * Строка токена - сеанс входа: при каждом обмене токен сеанса заменяется новым, а срок действия,
+ * заданный при входе, не продлевается. Повторное предъявление уже обменянного токена означает,
+ * что он перехвачен, поэтому сеанс закрывается целиком. Сеанс закрывается и при изменении роли пользователя.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final String INVALID_TOKEN = "Недействительный или просроченный токен обновления";
+
+    private final SecureRandom random = new SecureRandom();
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final JwtService jwtService;
+    private final Duration expiration;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, JwtService jwtService,
+                               @Value("${tms.jwt.refresh-token.expiration}") Duration expiration) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtService = jwtService;
+        this.expiration = expiration;
+    }
+
+    /**
+     * Открывает новый сеанс после входа или регистрации.
+     */
+    @Transactional
+    public AuthTokens issue(User user) {
+        String refreshToken = generate();
+        refreshTokenRepository.save(new RefreshToken(null, digest(refreshToken), user, Instant.now().plus(expiration),
+                null, user.getRole()));
+        return new AuthTokens(jwtService.generateToken(user), refreshToken);
+    }
+
+    /**
+     * Обменивает токен обновления на новую пару токенов без проверки пароля:
+     * одно чтение по уникальному индексу и подпись JWT. Пользователь берётся из кэша второго уровня.
+     * Закрытие сеанса фиксируется, несмотря на исключение.
+     */
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public AuthTokens refresh(String refreshToken) {
+        String tokenHash = digest(refreshToken);
+        Optional<RefreshToken> found = refreshTokenRepository.findByTokenHash(tokenHash);
+        if (found.isEmpty()) {
+            refreshTokenRepository.findByPreviousTokenHash(tokenHash).ifPresent(refreshTokenRepository::delete);
+            throw new InvalidRefreshTokenException(INVALID_TOKEN);
+        }
+        RefreshToken token = found.get();
+        if (!token.getExpiresAt().isAfter(Instant.now())) {
+            throw new InvalidRefreshTokenException(INVALID_TOKEN);
+        }
+        if (token.getRole() != token.getUser().getRole()) {
+            refreshTokenRepository.delete(token);
+            throw new InvalidRefreshTokenException(INVALID_TOKEN);
+        }
+        String newRefreshToken = generate();
+        token.setPreviousTokenHash(token.getTokenHash());
+        token.setTokenHash(digest(newRefreshToken));
+        return new AuthTokens(jwtService.generateToken(token.getUser()), newRefreshToken);
+    }
+
+    /**
+     * Закрывает все сеансы пользователя. Вызывается при смене пароля или роли пользователя,
+     * но не при пересчёте хэша после входа. Метод должен вызываться внутри транзакции.
+     */
+    public void revokeAll(User user) {
+        refreshTokenRepository.deleteByUserId(user.getId());
+    }
+
+    @Scheduled(cron = "${tms.jwt.refresh-token.cleanup-cron}")
+    @Transactional
+    public void deleteExpired() {
+        refreshTokenRepository.deleteExpired(Instant.now());
+    }
+
+    private String generate() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
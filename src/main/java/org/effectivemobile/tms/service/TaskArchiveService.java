@@ -0,0 +1,135 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.repository.TaskArchiveRepository;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Перенос задач, завершённых дольше заданного срока назад, в архивные таблицы, чтобы основная таблица
+ * и её индексы содержали только актуальные задачи. Задачи переносятся частями, каждая часть - в своей
+ * транзакции. Архивные задачи не попадают в поиск, подсказки и выгрузку и возвращаются
+ * в основную таблицу при смене статуса.
+ */
+@Service
+public class TaskArchiveService {
+
+    private final TaskArchiveRepository taskArchiveRepository;
+    private final TaskSuggestService taskSuggestService;
+    private final Cache cache;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archivedCounter;
+    private final Counter restoredCounter;
+    private final Duration age;
+    private final int chunkSize;
+
+    public TaskArchiveService(TaskArchiveRepository taskArchiveRepository, TaskSuggestService taskSuggestService,
+                              EntityManagerFactory entityManagerFactory, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${tms.tasks.archive.age}") Duration age,
+                              @Value("${tms.tasks.archive.chunk-size}") int chunkSize) {
+        this.taskArchiveRepository = taskArchiveRepository;
+        this.taskSuggestService = taskSuggestService;
+        this.cache = entityManagerFactory.getCache();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archivedCounter = Counter.builder("tasks.archived")
+                .description("Количество задач, перенесённых в архив")
+                .register(meterRegistry);
+        this.restoredCounter = Counter.builder("tasks.restored")
+                .description("Количество задач, возвращённых из архива")
+                .register(meterRegistry);
+        this.age = age;
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isSupported() {
+        return taskArchiveRepository.isSupported();
+    }
+
+    /**
+     * Срок отсчитывается от начала запуска, поэтому задачи, завершённые во время архивации,
+     * не продлевают её.
+     */
+    @Scheduled(cron = "${tms.tasks.archive.cron}")
+    public void archive() {
+        if (!isSupported()) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(age);
+        int archived;
+        do {
+            archived = transactionTemplate.execute(status -> {
+                List<TaskTitle> tasks = taskArchiveRepository.archive(cutoff, chunkSize);
+                evict(tasks.stream().map(TaskTitle::id).toList());
+                tasks.forEach(task -> taskSuggestService.remove(task.id(), task.version()));
+                return tasks.size();
+            });
+            archivedCounter.increment(archived);
+        } while (archived == chunkSize);
+    }
+
+    /**
+     * Возвращает задачи из архива в основную таблицу с прежними ID, версиями и комментариями.
+     * Если указан исполнитель, возвращаются только его задачи. Метод должен вызываться внутри транзакции.
+     *
+     * @return ID возвращённых задач
+     */
+    public List<Long> restore(Collection<Long> ids, Long executorId) {
+        if (!isSupported() || ids.isEmpty()) {
+            return List.of();
+        }
+        List<TaskTitle> restored = taskArchiveRepository.restore(ids, executorId);
+        List<Long> restoredIds = restored.stream().map(TaskTitle::id).toList();
+        evict(restoredIds);
+        taskSuggestService.restoreAll(restored);
+        countRestored(restored.size());
+        return restoredIds;
+    }
+
+    /**
+     * При откате транзакции задачи остаются в архиве, поэтому счётчик увеличивается только после фиксации.
+     */
+    private void countRestored(int count) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    restoredCounter.increment(count);
+                }
+            });
+        } else {
+            restoredCounter.increment(count);
+        }
+    }
+
+    /**
+     * Задачи переносятся в обход Hibernate, поэтому удаляются из кэша второго уровня явно,
+     * в том числе после завершения транзакции: до фиксации параллельное чтение может вернуть их в кэш.
+     */
+    private void evict(List<Long> ids) {
+        ids.forEach(id -> cache.evict(Task.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(Task.class, id));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.effectivemobile.tms.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.specification.TaskSpecificationUtils;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка задач и комментариев к ним. Строки читаются из БД курсором и сразу пишутся в ответ,
+ * поэтому расход памяти не зависит от количества выгружаемых задач.
+ */
+@Service
+@RequiredArgsConstructor
+public class TaskExportService {
+
+    private static final String CSV_TASK_HEADER = "id,title,description,status,priority,author_id,executor_id";
+    private static final String CSV_COMMENT_HEADER = ",comment_id,comment_content,comment_author_id";
+
+    private final TaskRepository taskRepository;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Права доступа проверяются в потоке запроса, а сама выгрузка выполняется
+     * при записи тела ответа в отдельной транзакции только для чтения.
+     */
+    public StreamingResponseBody export(ExportFormat format, boolean withComments, Long executorId, Long authorId) {
+        User user = userService.getCurrentUser();
+        Specification<Task> spec = TaskSpecificationUtils.isVisibleTo(user, executorId, authorId);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return outputStream -> transactionTemplate.executeWithoutResult(status -> write(format, withComments, spec, outputStream));
+    }
+
+    private void write(ExportFormat format, boolean withComments, Specification<Task> spec, OutputStream outputStream) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        try (Stream<TaskResponseDto> tasks = taskRepository.streamAll(spec);
+             Stream<CommentResponseDto> comments = withComments ? taskRepository.streamComments(spec) : Stream.empty()) {
+            CommentCursor commentCursor = new CommentCursor(comments.iterator());
+            if (format == ExportFormat.CSV) {
+                writer.write(withComments ? CSV_TASK_HEADER + CSV_COMMENT_HEADER : CSV_TASK_HEADER);
+                writer.write('\n');
+            }
+            Iterator<TaskResponseDto> iterator = tasks.iterator();
+            while (iterator.hasNext()) {
+                TaskResponseDto task = iterator.next();
+                List<CommentResponseDto> taskComments = commentCursor.nextFor(task.getId());
+                if (format == ExportFormat.CSV) {
+                    writeCsv(writer, task, withComments, taskComments);
+                } else {
+                    writeNdjson(writer, task, withComments, taskComments);
+                }
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeNdjson(Writer writer, TaskResponseDto task, boolean withComments, List<CommentResponseDto> comments) throws IOException {
+        ObjectNode node = objectMapper.valueToTree(task);
+        if (withComments) {
+            node.set("comments", objectMapper.valueToTree(comments));
+        }
+        writer.write(objectMapper.writeValueAsString(node));
+        writer.write('\n');
+    }
+
+    private static void writeCsv(Writer writer, TaskResponseDto task, boolean withComments, List<CommentResponseDto> comments) throws IOException {
+        String taskColumns = csvRow(task.getId(), task.getTitle(), task.getDescription(), task.getStatus(),
+                task.getPriority(), task.getAuthorId(), task.getExecutorId());
+        if (!withComments || comments.isEmpty()) {
+            writer.write(withComments ? taskColumns + ",,," : taskColumns);
+            writer.write('\n');
+            return;
+        }
+        for (CommentResponseDto comment : comments) {
+            writer.write(taskColumns);
+            writer.write(',');
+            writer.write(csvRow(comment.getId(), comment.getContent(), comment.getAuthorId()));
+            writer.write('\n');
+        }
+    }
+
+    private static String csvRow(Object... values) {
+        return Stream.of(values).map(TaskExportService::csvValue).collect(Collectors.joining(","));
+    }
+
+    private static String csvValue(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    /**
+     * Комментарии приходят в порядке ID задачи, как и сами задачи, поэтому для каждой задачи
+     * достаточно забрать очередную группу комментариев с её ID.
+     */
+    private static class CommentCursor {
+
+        private final Iterator<CommentResponseDto> iterator;
+        private CommentResponseDto next;
+
+        CommentCursor(Iterator<CommentResponseDto> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        List<CommentResponseDto> nextFor(Long taskId) {
+            List<CommentResponseDto> comments = new ArrayList<>();
+            while (next != null && next.getTaskId() <= taskId) {
+                if (next.getTaskId().equals(taskId)) {
+                    comments.add(next);
+                }
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+            return comments;
+        }
+    }
+}
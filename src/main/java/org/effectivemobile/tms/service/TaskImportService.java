@@ -0,0 +1,118 @@
+package org.effectivemobile.tms.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.task.TaskImportResultDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.repository.TaskCopyRepository;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.repository.UserRepository;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.importing.TaskImportReader;
+import org.effectivemobile.tms.util.importing.TaskImportRow;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class TaskImportService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final TaskCopyRepository taskCopyRepository;
+    private final TaskRepository taskRepository;
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TaskSuggestService taskSuggestService;
+    private final EntityManager entityManager;
+
+    /**
+     * Импортирует все задачи файла в одной транзакции. Некорректная запись отменяет весь импорт,
+     * а задачи с несуществующим исполнителем пропускаются и возвращаются в результате.
+     * На PostgreSQL используется COPY, на остальных СУБД (H2 в тестах) - пакетная вставка через JPA.
+     */
+    @Transactional
+    public TaskImportResultDto importTasks(ExportFormat format, InputStream inputStream) {
+        User user = userService.getCurrentUser();
+        if (user.getRole() == Role.ADMIN) {
+            TaskImportReader rows = TaskImportReader.open(format, inputStream, objectMapper);
+            List<TaskTitle> inserted = new ArrayList<>();
+            TaskImportResultDto result = taskCopyRepository.isSupported()
+                    ? taskCopyRepository.copy(rows, user.getId(), this::validate, inserted::add)
+                    : importInBatches(rows, user, inserted::add);
+            taskSuggestService.putAll(inserted);
+            return result;
+        }
+        throw new AccessDeniedException("Вы не являетесь администратором");
+    }
+
+    /**
+     * После каждой части задачи записываются в БД и отсоединяются от контекста,
+     * чтобы память и проверка изменений при сбросе не росли с размером файла.
+     */
+    private TaskImportResultDto importInBatches(Iterator<TaskImportRow> rows, User author, Consumer<TaskTitle> inserted) {
+        long imported = 0;
+        long rejected = 0;
+        List<Long> rejectedLines = new ArrayList<>();
+        List<TaskImportRow> batch = new ArrayList<>(BATCH_SIZE);
+        while (rows.hasNext()) {
+            batch.clear();
+            while (rows.hasNext() && batch.size() < BATCH_SIZE) {
+                TaskImportRow row = rows.next();
+                validate(row);
+                batch.add(row);
+            }
+            Map<Long, User> executors = userRepository.findAllById(batch.stream().map(row -> row.task().getExecutorId()).collect(Collectors.toSet()))
+                    .stream().collect(Collectors.toMap(User::getId, Function.identity()));
+            List<Task> tasks = new ArrayList<>(batch.size());
+            for (TaskImportRow row : batch) {
+                User executor = executors.get(row.task().getExecutorId());
+                if (executor == null) {
+                    if (rejected++ < TaskCopyRepository.REJECTED_LINES_LIMIT) {
+                        rejectedLines.add(row.line());
+                    }
+                    continue;
+                }
+                Task task = new Task();
+                task.setTitle(row.task().getTitle());
+                task.setDescription(row.task().getDescription());
+                task.setStatus(row.status());
+                task.setPriority(row.task().getPriority());
+                task.setAuthor(author);
+                task.setExecutor(executor);
+                tasks.add(task);
+            }
+            taskRepository.saveAll(tasks);
+            tasks.forEach(task -> inserted.accept(TaskTitle.of(task)));
+            imported += tasks.size();
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return new TaskImportResultDto(imported, rejected, rejectedLines);
+    }
+
+    private void validate(TaskImportRow row) {
+        for (ConstraintViolation<?> violation : validator.validate(row.task())) {
+            throw new BadRequestException("Строка " + row.line() + ": " + violation.getMessage());
+        }
+    }
+}
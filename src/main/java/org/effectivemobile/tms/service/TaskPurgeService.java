@@ -0,0 +1,146 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.repository.CommentPurgeRepository;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Фоновое удаление задач с большим числом комментариев. Задача сначала помечается удаляемой
+ * (t.tasks.deleting_at) и с этого момента скрыта от чтения и изменения. Комментарии удаляются частями,
+ * каждая часть - в своей транзакции, чтобы не держать блокировки на всём обсуждении сразу,
+ * после чего удаляется сама задача. Удаление выполняется в одном потоке, по одной задаче за раз.
+ * Удаление, прерванное остановкой приложения или ошибкой, возобновляется по отметке при запуске
+ * и по расписанию.
+ */
+@Slf4j
+@Service
+public class TaskPurgeService implements DisposableBean {
+
+    private final CommentPurgeRepository commentPurgeRepository;
+    private final TaskRepository taskRepository;
+    private final TaskSuggestService taskSuggestService;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer purgeTimer;
+    private final Counter failedCounter;
+    private final int threshold;
+    private final int chunkSize;
+    private final Set<Long> purging = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TaskPurgeService(CommentPurgeRepository commentPurgeRepository, TaskRepository taskRepository,
+                            TaskSuggestService taskSuggestService, PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${tms.tasks.purge.threshold}") int threshold,
+                            @Value("${tms.tasks.purge.chunk-size}") int chunkSize) {
+        this.commentPurgeRepository = commentPurgeRepository;
+        this.taskRepository = taskRepository;
+        this.taskSuggestService = taskSuggestService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgeTimer = Timer.builder("tasks.purge")
+                .description("Время фонового удаления задачи с комментариями")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("tasks.purge.failed")
+                .description("Количество прерванных ошибкой фоновых удалений задач")
+                .register(meterRegistry);
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * У задачи больше комментариев, чем допустимо удалить в запросе пользователя.
+     */
+    public boolean isLarge(Long taskId) {
+        return commentPurgeRepository.countUpTo(taskId, threshold + 1) > threshold;
+    }
+
+    /**
+     * Помечает задачу удаляемой и убирает её из подсказок. Метод должен вызываться внутри транзакции:
+     * удаление начинается после её фиксации, а при откате задача остаётся нетронутой.
+     */
+    public void schedule(Task task) {
+        task.setDeletingAt(Instant.now());
+        taskRepository.saveAndFlush(task);
+        taskSuggestService.remove(task.getId(), task.getVersion());
+        Long taskId = task.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(taskId);
+                }
+            });
+        } else {
+            submit(taskId);
+        }
+    }
+
+    /**
+     * Возобновляет удаление помеченных задач. Задачи, удаление которых уже идёт, пропускаются.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${tms.tasks.purge.resume-cron}")
+    public void resume() {
+        taskRepository.findDeletingIds().forEach(this::submit);
+    }
+
+    /**
+     * Повторная отправка задачи, удаление которой уже идёт, ничего не делает. При ошибке задача
+     * остаётся помеченной, и удаление повторяется при следующем возобновлении.
+     */
+    private void submit(Long taskId) {
+        if (purging.add(taskId)) {
+            executor.execute(() -> {
+                try {
+                    purgeTimer.record(() -> purge(taskId));
+                } catch (RuntimeException ex) {
+                    failedCounter.increment();
+                    log.error("Фоновое удаление задачи {} прервано, оно будет повторено", taskId, ex);
+                } finally {
+                    purging.remove(taskId);
+                }
+            });
+        }
+    }
+
+    void purge(Long taskId) {
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> commentPurgeRepository.deleteChunk(taskId, chunkSize));
+        } while (deleted == chunkSize);
+        transactionTemplate.executeWithoutResult(status -> taskRepository.findById(taskId)
+                .filter(task -> task.getDeletingAt() != null)
+                .ifPresent(task -> {
+                    taskRepository.delete(task);
+                    taskSuggestService.remove(taskId, task.getVersion());
+                }));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -2,60 +2,176 @@ package org.effectivemobile.tms.service;
 
 import javax.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.config.CacheConfig;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBatchItemResultDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateResponseDto;
 import org.effectivemobile.tms.dto.task.TaskCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskDetailDto;
 import org.effectivemobile.tms.dto.task.TaskResponseDto;
 import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
 import org.effectivemobile.tms.dto.task.TaskUpdateStatusRequestDto;
 import org.effectivemobile.tms.entity.Task;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.exception.ConflictException;
 import org.effectivemobile.tms.mapper.TaskMapper;
+import org.effectivemobile.tms.repository.CommentRepository;
+import org.effectivemobile.tms.repository.TaskArchiveRepository;
 import org.effectivemobile.tms.repository.TaskRepository;
 import org.effectivemobile.tms.repository.UserRepository;
 import org.effectivemobile.tms.util.enums.Role;
 import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.pagination.CursorUtils;
 import org.effectivemobile.tms.util.specification.TaskSpecificationUtils;
-import org.springframework.data.domain.Page;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TaskService {
 
+    public static final int MAX_LATEST_COMMENTS = 50;
+
     private final TaskRepository taskRepository;
+    private final CommentRepository commentRepository;
     private final UserRepository userRepository;
     private final TaskMapper taskMapper;
     private final UserService userService;
+    private final CacheManager cacheManager;
+    private final TaskSuggestService taskSuggestService;
+    private final TaskPurgeService taskPurgeService;
+    private final TaskArchiveRepository taskArchiveRepository;
+    private final TaskArchiveService taskArchiveService;
 
-    public List<TaskResponseDto> getAll(Integer page, Integer size, Long executorId, Long authorId) {
+    /**
+     * С includeArchived задачи читаются одним запросом из основной таблицы и архива.
+     */
+    public Slice<TaskResponseDto> getAll(Integer page, Integer size, Long executorId, Long authorId, boolean includeArchived) {
         User user = userService.getCurrentUser();
-        Pageable pageable = PageRequest.of(page, size);
-        Specification<Task> spec;
-        if (user.getRole() == Role.ADMIN) {
-            spec = Specification.where(TaskSpecificationUtils.hasExecutor(executorId)).and(TaskSpecificationUtils.hasAuthor(authorId));
-        } else {
-            spec = TaskSpecificationUtils.hasExecutor(user.getId());
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+        if (includeArchived && taskArchiveRepository.isSupported()) {
+            return findSliceWithArchived(user, executorId, authorId, null, pageable);
+        }
+        return taskRepository.findSlice(TaskSpecificationUtils.isVisibleTo(user, executorId, authorId), pageable);
+    }
+
+    public Slice<TaskResponseDto> getAllAfter(String after, Integer size, Long executorId, Long authorId, boolean includeArchived) {
+        User user = userService.getCurrentUser();
+        Pageable pageable = PageRequest.of(0, size, Sort.by("id"));
+        if (includeArchived && taskArchiveRepository.isSupported()) {
+            return findSliceWithArchived(user, executorId, authorId, CursorUtils.decode(after), pageable);
+        }
+        Specification<Task> spec = TaskSpecificationUtils.isVisibleTo(user, executorId, authorId).and(TaskSpecificationUtils.hasIdGreaterThan(CursorUtils.decode(after)));
+        return taskRepository.findSlice(spec, pageable);
+    }
+
+    /**
+     * Полнотекстовый поиск с той же видимостью, что и в getAll: администратор ищет среди всех задач
+     * с фильтрами по исполнителю и автору, исполнитель - только среди своих.
+     */
+    public Slice<TaskResponseDto> search(String query, Integer page, Integer size, Long executorId, Long authorId) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Поисковый запрос не может быть пустым");
+        }
+        User user = userService.getCurrentUser();
+        Long visibleExecutorId = user.getRole() == Role.ADMIN ? executorId : user.getId();
+        Long visibleAuthorId = user.getRole() == Role.ADMIN ? authorId : null;
+        return taskRepository.search(query, visibleExecutorId, visibleAuthorId, PageRequest.of(page, size));
+    }
+
+    /**
+     * Количество задач берётся из кэша с коротким временем жизни и может немного отставать от БД.
+     */
+    public long count(Long executorId, Long authorId, boolean includeArchived) {
+        User user = userService.getCurrentUser();
+        Long visibleExecutorId = user.getRole() == Role.ADMIN ? executorId : user.getId();
+        Long visibleAuthorId = user.getRole() == Role.ADMIN ? authorId : null;
+        Cache counts = cacheManager.getCache(CacheConfig.COUNTS_CACHE);
+        long count = counts.get("tasks:" + visibleExecutorId + ":" + visibleAuthorId,
+                () -> taskRepository.count(TaskSpecificationUtils.isVisibleTo(user, executorId, authorId)));
+        if (includeArchived && taskArchiveRepository.isSupported()) {
+            count += counts.get("tasks-archive:" + visibleExecutorId + ":" + visibleAuthorId,
+                    () -> taskArchiveRepository.count(visibleExecutorId, visibleAuthorId));
         }
-        Page<Task> tasks = taskRepository.findAll(spec, pageable);
-        return tasks.stream().map(taskMapper::entityToResponseDto).toList();
+        return count;
+    }
+
+    /**
+     * ETag задачи строится по её версии. Задача читается из кэша второго уровня,
+     * поэтому проверка If-None-Match обычно обходится без запроса к БД и без построения DTO.
+     */
+    public String getETag(Long id) {
+        User user = userService.getCurrentUser();
+        Task task = findTask(id);
+        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
+            return ETagUtils.of(task.getId(), task.getVersion());
+        }
+        throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
     }
 
     public TaskResponseDto getById(Long id) {
         User user = userService.getCurrentUser();
-        Task task = taskRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
+        Task task = findTask(id);
         if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
             return taskMapper.entityToResponseDto(task);
         }
         throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
     }
 
+    /**
+     * Задача вместе с последними комментариями для экрана задачи. Задача берётся из кэша второго уровня,
+     * комментарии читаются одним запросом по индексу (task_id, id). Количество комментариев
+     * запрашивается отдельно, только если у задачи есть комментарии старше возвращённых.
+     * Комментарии архивной задачи читаются из архива.
+     */
+    public TaskDetailDto getDetail(Long id, Integer commentsLimit) {
+        if (commentsLimit < 1 || commentsLimit > MAX_LATEST_COMMENTS) {
+            throw new BadRequestException("Количество комментариев должно быть от 1 до " + MAX_LATEST_COMMENTS);
+        }
+        User user = userService.getCurrentUser();
+        Task task = findTask(id);
+        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
+            Pageable latest = PageRequest.of(0, commentsLimit);
+            Slice<CommentResponseDto> commentSlice = task.isArchived()
+                    ? taskArchiveRepository.findCommentsBefore(id, Long.MAX_VALUE, latest)
+                    : commentRepository.findAllByTaskIdBefore(id, Long.MAX_VALUE, latest);
+            List<CommentResponseDto> comments = commentSlice.getContent();
+            if (commentSlice.hasNext()) {
+                String cursor = CursorUtils.encode(comments.get(comments.size() - 1).getId());
+                long count = task.isArchived() ? taskArchiveRepository.countComments(id) : commentRepository.countByTaskId(id);
+                return new TaskDetailDto(taskMapper.entityToResponseDto(task), count, comments, cursor);
+            }
+            return new TaskDetailDto(taskMapper.entityToResponseDto(task), (long) comments.size(), comments, null);
+        }
+        throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
+    }
+
     @Transactional
     public TaskResponseDto create(TaskCreateRequestDto dto) {
         User user = userService.getCurrentUser();
@@ -65,53 +181,186 @@ public class TaskService {
             task.setDescription(dto.getDescription());
             task.setStatus(Status.WAITING);
             task.setPriority(dto.getPriority());
-            task.setAuthor(userService.getCurrentUser());
+            task.setAuthor(user);
             task.setExecutor(userRepository.findById(dto.getExecutorId()).orElseThrow(() -> new EntityNotFoundException("Исполнитель не найден")));
             taskRepository.save(task);
+            taskSuggestService.put(TaskTitle.of(task));
             return taskMapper.entityToResponseDto(task);
         }
         throw new AccessDeniedException("Вы не являетесь администратором");
     }
 
+    /**
+     * Исполнители проверяются одним запросом, задачи с найденными исполнителями
+     * вставляются пакетно, для остальных возвращается причина отказа.
+     */
     @Transactional
-    public TaskResponseDto updateStatus(Long id, TaskUpdateStatusRequestDto dto) {
+    public List<TaskBatchItemResultDto> createBatch(TaskBatchCreateRequestDto dto) {
         User user = userService.getCurrentUser();
-        Task task = taskRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
-        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
-            task.setStatus(dto.getStatus());
-            taskRepository.save(task);
-            return taskMapper.entityToResponseDto(task);
+        if (user.getRole() == Role.ADMIN) {
+            Set<Long> executorIds = dto.getTasks().stream().map(TaskCreateRequestDto::getExecutorId).collect(Collectors.toSet());
+            Map<Long, User> executors = userRepository.findAllById(executorIds).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+
+            List<TaskBatchItemResultDto> results = new ArrayList<>(dto.getTasks().size());
+            Map<Integer, Task> tasks = new LinkedHashMap<>();
+            for (int i = 0; i < dto.getTasks().size(); i++) {
+                TaskCreateRequestDto taskDto = dto.getTasks().get(i);
+                User executor = executors.get(taskDto.getExecutorId());
+                if (executor == null) {
+                    results.add(new TaskBatchItemResultDto(i, null, "Исполнитель не найден"));
+                    continue;
+                }
+                Task task = new Task();
+                task.setTitle(taskDto.getTitle());
+                task.setDescription(taskDto.getDescription());
+                task.setStatus(Status.WAITING);
+                task.setPriority(taskDto.getPriority());
+                task.setAuthor(user);
+                task.setExecutor(executor);
+                tasks.put(i, task);
+                results.add(new TaskBatchItemResultDto(i, null, null));
+            }
+            taskRepository.saveAll(tasks.values());
+            taskSuggestService.putAll(tasks.values().stream().map(TaskTitle::of).toList());
+            tasks.forEach((index, task) -> results.get(index).setTask(taskMapper.entityToResponseDto(task)));
+            return results;
         }
-        throw new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
+        throw new AccessDeniedException("Вы не являетесь администратором");
+    }
+
+    /**
+     * Статус меняется одним UPDATE, который сам проверяет исполнителя и версию из If-Match
+     * и возвращает новое состояние задачи. Задача читается только для выяснения причины отказа.
+     */
+    @Transactional
+    public TaskResponseDto updateStatus(Long id, TaskUpdateStatusRequestDto dto, String ifMatch) {
+        User user = userService.getCurrentUser();
+        TaskUpdateRequestDto changes = new TaskUpdateRequestDto();
+        changes.setStatus(dto.getStatus());
+        Long executorId = user.getRole() == Role.ADMIN ? null : user.getId();
+        return update(user, id, changes, executorId, ifMatch);
     }
 
+    /**
+     * Права проверяются в самом UPDATE: исполнитель может изменить только свои задачи,
+     * поэтому недоступные и несуществующие задачи одинаково попадают в отклонённые.
+     * Если задача снова становится незавершённой, не найденные задачи ищутся в архиве.
+     */
     @Transactional
-    public TaskResponseDto update(Long id, TaskUpdateRequestDto dto) {
+    public TaskBulkStatusUpdateResponseDto updateStatuses(TaskBulkStatusUpdateRequestDto dto) {
+        User user = userService.getCurrentUser();
+        Set<Long> ids = new LinkedHashSet<>(dto.getIds());
+        String status = dto.getStatus().name();
+        Set<Long> updatedIds = new HashSet<>(updateStatuses(user, ids, status));
+        if (dto.getStatus() != Status.COMPLETED && updatedIds.size() < ids.size()) {
+            Long executorId = user.getRole() == Role.ADMIN ? null : user.getId();
+            List<Long> restored = taskArchiveService.restore(ids.stream().filter(id -> !updatedIds.contains(id)).toList(), executorId);
+            if (!restored.isEmpty()) {
+                updatedIds.addAll(updateStatuses(user, restored, status));
+            }
+        }
+        List<Long> rejected = ids.stream().filter(id -> !updatedIds.contains(id)).toList();
+        return new TaskBulkStatusUpdateResponseDto(ids.stream().filter(updatedIds::contains).toList(), rejected);
+    }
+
+    /**
+     * Изменённые поля записываются одним UPDATE без загрузки задачи. Исполнитель проверяется
+     * через кэш второго уровня, поэтому обычно не требует отдельного запроса.
+     */
+    @Transactional
+    public TaskResponseDto update(Long id, TaskUpdateRequestDto dto, String ifMatch) {
         User user = userService.getCurrentUser();
         if (user.getRole() == Role.ADMIN) {
-            Task task = taskRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
-            Optional.ofNullable(dto.getTitle()).ifPresent(task::setTitle);
-            Optional.ofNullable(dto.getDescription()).ifPresent(task::setDescription);
-            Optional.ofNullable(dto.getStatus()).ifPresent(task::setStatus);
-            Optional.ofNullable(dto.getPriority()).ifPresent(task::setPriority);
-            Optional.ofNullable(dto.getExecutorId()).ifPresent(executorId -> {
-                User executor = userRepository.findById(executorId).orElseThrow(() -> new EntityNotFoundException("Исполнитель не найден"));
-                task.setExecutor(executor);
-            });
-            taskRepository.save(task);
-            return taskMapper.entityToResponseDto(task);
+            if (dto.getExecutorId() != null && userRepository.findById(dto.getExecutorId()).isEmpty()) {
+                throw new EntityNotFoundException("Исполнитель не найден");
+            }
+            TaskResponseDto task = update(user, id, dto, null, ifMatch);
+            taskSuggestService.put(TaskTitle.of(task));
+            return task;
         }
         throw new AccessDeniedException("Вы не являетесь администратором");
     }
 
+    /**
+     * Задача удаляется одним DELETE, комментарии - каскадно в БД. Задача с большим числом комментариев
+     * помечается удаляемой и удаляется в фоне частями; в этом случае возвращается false.
+     * Архивная задача удаляется из архива вместе с комментариями.
+     */
     @Transactional
-    public void delete(Long id) {
+    public boolean delete(Long id) {
         User user = userService.getCurrentUser();
-        Task task = taskRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
+        Task task = findTask(id);
         if (user.getRole() == Role.ADMIN) {
+            if (task.isArchived()) {
+                if (!taskArchiveRepository.delete(id)) {
+                    throw new EntityNotFoundException("Задача не найдена");
+                }
+                return true;
+            }
+            if (taskPurgeService.isLarge(id)) {
+                taskPurgeService.schedule(task);
+                return false;
+            }
             taskRepository.delete(task);
-            return;
+            taskSuggestService.remove(id, task.getVersion());
+            return true;
         }
         throw new AccessDeniedException("Вы не являетесь администратором");
     }
+
+    /**
+     * Задача из основной таблицы или, если её там нет, из архива. Задача, поставленная на фоновое удаление,
+     * считается уже удалённой.
+     */
+    private Task findTask(Long id) {
+        return taskRepository.findById(id)
+                .filter(task -> task.getDeletingAt() == null)
+                .or(() -> taskArchiveRepository.isSupported() ? taskArchiveRepository.findById(id) : Optional.empty())
+                .orElseThrow(() -> new EntityNotFoundException("Задача не найдена"));
+    }
+
+    private List<Long> updateStatuses(User user, Collection<Long> ids, String status) {
+        return user.getRole() == Role.ADMIN
+                ? taskRepository.updateStatus(ids, status)
+                : taskRepository.updateStatusByExecutor(ids, status, user.getId());
+    }
+
+    /**
+     * Архивная задача, которая снова становится незавершённой, возвращается из архива
+     * в той же транзакции, и UPDATE повторяется. Остальные изменения архивных задач не выполняются.
+     */
+    private TaskResponseDto update(User user, Long id, TaskUpdateRequestDto changes, Long executorId, String ifMatch) {
+        List<Long> versions = ETagUtils.versions(ifMatch, id);
+        if (versions != null && versions.isEmpty()) {
+            throw updateFailure(user, id);
+        }
+        Optional<TaskResponseDto> task = taskRepository.update(id, changes, executorId, versions);
+        if (task.isEmpty() && changes.getStatus() != null && changes.getStatus() != Status.COMPLETED
+                && !taskArchiveService.restore(List.of(id), executorId).isEmpty()) {
+            task = taskRepository.update(id, changes, executorId, versions);
+        }
+        return task.orElseThrow(() -> updateFailure(user, id));
+    }
+
+    private Slice<TaskResponseDto> findSliceWithArchived(User user, Long executorId, Long authorId, Long afterId, Pageable pageable) {
+        Long visibleExecutorId = user.getRole() == Role.ADMIN ? executorId : user.getId();
+        Long visibleAuthorId = user.getRole() == Role.ADMIN ? authorId : null;
+        return taskArchiveRepository.findSlice(visibleExecutorId, visibleAuthorId, afterId, pageable);
+    }
+
+    /**
+     * UPDATE не различает причины отказа, поэтому задача дочитывается, чтобы вернуть 404, 403, 409 или 412.
+     * Архивную задачу можно только вернуть из архива сменой статуса на незавершённый.
+     */
+    private RuntimeException updateFailure(User user, Long id) {
+        Task task = findTask(id);
+        if (user.getRole() == Role.ADMIN || user.equals(task.getExecutor())) {
+            if (task.isArchived()) {
+                return new ConflictException("Задача находится в архиве; изменить её можно только сменой статуса на незавершённый");
+            }
+            return new OptimisticLockingFailureException("Задача была изменена другим пользователем");
+        }
+        return new AccessDeniedException("Вы не являетесь исполнителем задачи или администратором");
+    }
 }
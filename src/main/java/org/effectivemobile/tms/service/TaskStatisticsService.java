@@ -0,0 +1,98 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.effectivemobile.tms.dto.task.TaskStatisticsDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.repository.TaskStatisticsRepository;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.statistics.TaskCount;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class TaskStatisticsService {
+
+    private final TaskStatisticsRepository taskStatisticsRepository;
+    private final UserService userService;
+    private final Counter driftCounter;
+
+    public TaskStatisticsService(TaskStatisticsRepository taskStatisticsRepository, UserService userService,
+                                 MeterRegistry meterRegistry) {
+        this.taskStatisticsRepository = taskStatisticsRepository;
+        this.userService = userService;
+        this.driftCounter = Counter.builder("tasks.statistics.drift")
+                .description("Количество счётчиков задач, исправленных при сверке")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Исполнитель получает статистику по своим задачам, администратор - по задачам исполнителя,
+     * автора или по всем задачам. Счётчики ведутся отдельно по исполнителям и по авторам,
+     * поэтому фильтровать одновременно по обоим нельзя.
+     */
+    public TaskStatisticsDto get(Long executorId, Long authorId) {
+        User user = userService.getCurrentUser();
+        if (user.getRole() != Role.ADMIN) {
+            return toDto(taskStatisticsRepository.countByExecutor(user.getId()));
+        }
+        if (executorId != null && authorId != null) {
+            throw new BadRequestException("Статистика строится либо по исполнителю, либо по автору");
+        }
+        return toDto(authorId != null
+                ? taskStatisticsRepository.countByAuthor(authorId)
+                : taskStatisticsRepository.countByExecutor(executorId));
+    }
+
+    /**
+     * Свёртка журнала изменений счётчиков: чем реже она выполняется, тем больше строк журнала суммируется при чтении.
+     */
+    @Scheduled(cron = "${tms.statistics.fold-cron}")
+    @Transactional
+    public void fold() {
+        taskStatisticsRepository.fold();
+    }
+
+    /**
+     * Сверка счётчиков с задачами на случай изменений в обход триггеров,
+     * например при отключённых триггерах во время обслуживания БД. Таблицы задач не блокируются:
+     * задачи и счётчики читаются из одного снимка.
+     */
+    @Scheduled(cron = "${tms.statistics.reconcile-cron}")
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public void reconcile() {
+        driftCounter.increment(taskStatisticsRepository.reconcile());
+    }
+
+    private static TaskStatisticsDto toDto(List<TaskCount> counts) {
+        long total = 0;
+        Map<Status, Long> byStatus = new EnumMap<>(Status.class);
+        Map<Priority, Long> byPriority = new EnumMap<>(Priority.class);
+        Map<Status, Map<Priority, Long>> byStatusAndPriority = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            byStatus.put(status, 0L);
+            Map<Priority, Long> byPriorityOfStatus = new EnumMap<>(Priority.class);
+            for (Priority priority : Priority.values()) {
+                byPriorityOfStatus.put(priority, 0L);
+                byPriority.put(priority, 0L);
+            }
+            byStatusAndPriority.put(status, byPriorityOfStatus);
+        }
+        for (TaskCount count : counts) {
+            total += count.count();
+            byStatus.merge(count.status(), count.count(), Long::sum);
+            byPriority.merge(count.priority(), count.count(), Long::sum);
+            byStatusAndPriority.get(count.status()).merge(count.priority(), count.count(), Long::sum);
+        }
+        return new TaskStatisticsDto(total, byStatus, byPriority, byStatusAndPriority);
+    }
+}
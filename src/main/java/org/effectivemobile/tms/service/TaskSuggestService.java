@@ -0,0 +1,126 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskSuggestionDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.effectivemobile.tms.util.suggest.TaskTitleIndex;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Подсказки по названиям задач из индекса в памяти. Индекс заполняется из БД при запуске приложения,
+ * а затем обновляется сервисами, изменяющими задачи, после фиксации их транзакций.
+ * Изменения, сделанные другими экземплярами приложения или в обход сервисов, в индекс не попадают.
+ */
+@Service
+public class TaskSuggestService implements SmartInitializingSingleton {
+
+    public static final int MAX_LIMIT = 50;
+
+    private final TaskTitleIndex index = new TaskTitleIndex();
+    private final TaskRepository taskRepository;
+    private final UserService userService;
+    private final PlatformTransactionManager transactionManager;
+    private final Timer suggestTimer;
+
+    public TaskSuggestService(TaskRepository taskRepository, UserService userService,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.userService = userService;
+        this.transactionManager = transactionManager;
+        this.suggestTimer = Timer.builder("tasks.suggest")
+                .description("Время поиска подсказок по названиям задач")
+                .register(meterRegistry);
+        Gauge.builder("tasks.suggest.index.size", index, TaskTitleIndex::size)
+                .description("Количество задач в индексе подсказок")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Видимость та же, что и в getAll: администратор получает подсказки по всем задачам
+     * с фильтрами по исполнителю и автору, исполнитель - только по своим.
+     */
+    public List<TaskSuggestionDto> suggest(String prefix, Integer limit, Long executorId, Long authorId) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Количество подсказок должно быть от 1 до " + MAX_LIMIT);
+        }
+        User user = userService.getCurrentUser();
+        Long visibleExecutorId = user.getRole() == Role.ADMIN ? executorId : user.getId();
+        Long visibleAuthorId = user.getRole() == Role.ADMIN ? authorId : null;
+        return suggestTimer.record(() -> index.find(prefix, visibleExecutorId, visibleAuthorId, limit).stream()
+                .map(task -> new TaskSuggestionDto(task.id(), task.title()))
+                .toList());
+    }
+
+    public void put(TaskTitle task) {
+        afterCommit(() -> index.put(task));
+    }
+
+    public void putAll(Collection<TaskTitle> tasks) {
+        afterCommit(() -> tasks.forEach(index::put));
+    }
+
+    /**
+     * Задачи, возвращённые из архива с прежними версиями.
+     */
+    public void restoreAll(Collection<TaskTitle> tasks) {
+        afterCommit(() -> tasks.forEach(index::restore));
+    }
+
+    /**
+     * Версия задачи на момент удаления не даёт вернуть её в индекс изменениям,
+     * зафиксированным раньше удаления, но применённым к индексу позже.
+     */
+    public void remove(Long id, Long version) {
+        afterCommit(() -> index.remove(id, version));
+    }
+
+    /**
+     * Индекс заполняется до того, как приложение начнёт принимать запросы,
+     * поэтому загрузка не пересекается с изменениями задач.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<TaskResponseDto> tasks = taskRepository.streamAll(Specification.<Task>where(null))) {
+                tasks.forEach(task -> index.put(TaskTitle.of(task)));
+            }
+        });
+    }
+
+    /**
+     * Откаченные изменения не должны попасть в индекс, поэтому внутри транзакции
+     * индекс обновляется только после её фиксации.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.effectivemobile.tms.service;
+
+import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.dto.user.UserAuthRequestDto;
+import org.effectivemobile.tms.dto.user.UserBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.user.UserBatchItemResultDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.mapper.UserMapper;
+import org.effectivemobile.tms.repository.UserBatchRepository;
+import org.effectivemobile.tms.repository.UserRepository;
+import org.effectivemobile.tms.util.enums.Role;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Массовое создание пользователей администратором. Занятые имена проверяются одним запросом
+ * до хэширования, чтобы не тратить BCrypt на заведомо отклонённых пользователей.
+ * Метод не транзакционный: хэширование пакета занимает секунды, и соединение с БД на это время не удерживается.
+ * Захэшированные пользователи вставляются затем одной короткой транзакцией, поэтому при ошибке вставки
+ * не создаётся ни один пользователь пакета.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserProvisioningService {
+
+    private static final String USERNAME_TAKEN = "Пользователь с таким именем уже существует";
+    private static final String USERNAME_REPEATED = "Имя пользователя повторяется в запросе";
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final UserBatchRepository userBatchRepository;
+    private final UserMapper userMapper;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final PlatformTransactionManager transactionManager;
+
+    public List<UserBatchItemResultDto> createBatch(UserBatchCreateRequestDto dto) {
+        User user = userService.getCurrentUser();
+        if (user.getRole() == Role.ADMIN) {
+            Set<String> usernames = new HashSet<>();
+            dto.getUsers().forEach(userDto -> usernames.add(userDto.getUsername()));
+            Set<String> existing = userRepository.findExistingUsernames(usernames);
+
+            List<UserBatchItemResultDto> results = new ArrayList<>(dto.getUsers().size());
+            Map<Integer, UserAuthRequestDto> accepted = new LinkedHashMap<>();
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < dto.getUsers().size(); i++) {
+                UserAuthRequestDto userDto = dto.getUsers().get(i);
+                if (existing.contains(userDto.getUsername())) {
+                    results.add(new UserBatchItemResultDto(i, null, USERNAME_TAKEN));
+                } else if (!seen.add(userDto.getUsername())) {
+                    results.add(new UserBatchItemResultDto(i, null, USERNAME_REPEATED));
+                } else {
+                    accepted.put(i, userDto);
+                    results.add(new UserBatchItemResultDto(i, null, null));
+                }
+            }
+
+            List<String> passwords = passwordHashingService.mapAll(
+                    accepted.values().stream().map(UserAuthRequestDto::getPassword).toList(), passwordEncoder::encode);
+            Map<Integer, User> users = new LinkedHashMap<>();
+            int next = 0;
+            for (Map.Entry<Integer, UserAuthRequestDto> entry : accepted.entrySet()) {
+                users.put(entry.getKey(), new User(null, entry.getValue().getUsername(), passwords.get(next++), Role.USER));
+            }
+            if (!users.isEmpty()) {
+                save(new ArrayList<>(users.values()));
+            }
+
+            users.forEach((index, created) -> {
+                if (created.getId() == null) {
+                    results.get(index).setError(USERNAME_TAKEN);
+                } else {
+                    results.get(index).setUser(userMapper.entityToResponseDto(created));
+                }
+            });
+            return results;
+        }
+        throw new AccessDeniedException("Вы не являетесь администратором");
+    }
+
+    /**
+     * Пользователи, чьи имена заняли между проверкой и вставкой, остаются без ID.
+     */
+    private void save(List<User> users) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (userBatchRepository.isSupported()) {
+                Map<String, Long> ids = userBatchRepository.insertAll(users);
+                users.forEach(created -> created.setId(ids.get(created.getUsername())));
+            } else {
+                userRepository.saveAll(users);
+            }
+        });
+    }
+}
@@ -3,17 +3,25 @@ package org.effectivemobile.tms.service;
 import javax.persistence.EntityExistsException;
 import javax.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.effectivemobile.tms.config.CacheConfig;
 import org.effectivemobile.tms.dto.user.UserAuthRequestDto;
 import org.effectivemobile.tms.dto.user.UserResponseDto;
 import org.effectivemobile.tms.entity.User;
 import org.effectivemobile.tms.mapper.UserMapper;
 import org.effectivemobile.tms.repository.UserRepository;
 import org.effectivemobile.tms.util.enums.Role;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -23,17 +31,30 @@ import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final CacheManager cacheManager;
 
     public List<UserResponseDto> getAll(Integer page, Integer size) {
         User user = getCurrentUser();
         if (user.getRole() == Role.ADMIN) {
             Pageable pageable = PageRequest.of(page, size);
-            Page<User> userPage = userRepository.findAll(pageable);
-            return userPage.stream().map(userMapper::entityToResponseDto).toList();
+            Slice<User> userSlice = userRepository.findAllBy(pageable);
+            return userSlice.stream().map(userMapper::entityToResponseDto).toList();
+        }
+        throw new AccessDeniedException("Вы не являетесь администратором");
+    }
+
+    /**
+     * Количество пользователей берётся из кэша с коротким временем жизни и может немного отставать от БД.
+     */
+    public long count() {
+        User user = getCurrentUser();
+        if (user.getRole() == Role.ADMIN) {
+            Cache counts = cacheManager.getCache(CacheConfig.COUNTS_CACHE);
+            return counts.get("users", userRepository::count);
         }
         throw new AccessDeniedException("Вы не являетесь администратором");
     }
@@ -59,12 +80,41 @@ public class UserService implements UserDetailsService {
         return userMapper.entityToResponseDto(user);
     }
 
+    /**
+     * Вызывается Spring Security после успешного входа, если хэш пароля нужно пересчитать
+     * с текущей стоимостью BCrypt. Пароль при этом не меняется, поэтому открытые сеансы
+     * пользователя сохраняются.
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#user.username")
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = userRepository.findByUsername(user.getUsername()).orElseThrow(() -> new UsernameNotFoundException("Пользователь с таким именем не найден"));
+        entity.setPassword(newPassword);
+        return entity;
+    }
+
+    /**
+     * Вызов loadUserByUsername внутри сервиса минует прокси и @Cacheable, поэтому кэш пользователей
+     * читается и заполняется здесь явно.
+     */
     public User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return loadUserByUsername(username);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof User user) {
+            return user;
+        }
+        Cache users = cacheManager.getCache(CacheConfig.USERS_CACHE);
+        User cached = users.get(authentication.getName(), User.class);
+        if (cached != null) {
+            return cached;
+        }
+        User user = loadUserByUsername(authentication.getName());
+        users.put(authentication.getName(), user);
+        return user;
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.USERS_CACHE, key = "#username")
     public User loadUserByUsername(String username) throws UsernameNotFoundException {
         return userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("Пользователь с таким именем не найден"));
     }
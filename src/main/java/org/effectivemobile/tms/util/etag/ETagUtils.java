@@ -0,0 +1,55 @@
+package org.effectivemobile.tms.util.etag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ETagUtils {
+
+    /**
+     * Строгий ETag из значений, однозначно определяющих содержимое ответа.
+     */
+    public static String of(Object... parts) {
+        return Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    /**
+     * Проверяет условие If-Match: отсутствующий заголовок и "*" разрешают изменение,
+     * иначе текущий ETag должен строго совпасть с одним из перечисленных.
+     */
+    public static boolean matches(String ifMatch, String eTag) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .anyMatch(value -> value.equals("*") || value.equals(eTag));
+    }
+
+    /**
+     * Версии объекта, перечисленные в If-Match в виде ETag "id-version". null означает, что условие
+     * не задано; пустой список — что ни один ETag не относится к объекту.
+     */
+    public static List<Long> versions(String ifMatch, Long id) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        List<Long> versions = new ArrayList<>();
+        for (String value : ifMatch.split(",")) {
+            value = value.trim();
+            if (value.equals("*")) {
+                return null;
+            }
+            if (value.startsWith(prefix) && value.endsWith("\"") && value.length() > prefix.length() + 1) {
+                try {
+                    versions.add(Long.parseLong(value.substring(prefix.length(), value.length() - 1)));
+                } catch (NumberFormatException ignored) {
+                    // ETag другого вида не может совпасть с ETag объекта
+                }
+            }
+        }
+        return versions;
+    }
+}
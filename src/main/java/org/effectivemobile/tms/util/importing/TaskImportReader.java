@@ -0,0 +1,175 @@
+package org.effectivemobile.tms.util.importing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.effectivemobile.tms.dto.task.TaskCreateRequestDto;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Status;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Построчно читает задачи из файла в формате выгрузки: NDJSON с полями {@code TaskResponseDto}
+ * или CSV с заголовком. Лишние поля и столбцы (ID задачи, автор, комментарии) игнорируются.
+ */
+public abstract class TaskImportReader implements Iterator<TaskImportRow> {
+
+    private long line;
+
+    public static TaskImportReader open(ExportFormat format, InputStream inputStream, ObjectMapper objectMapper) {
+        try {
+            return format == ExportFormat.CSV ? new CsvReader(inputStream) : new NdjsonReader(inputStream, objectMapper);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public TaskImportRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        line++;
+        try {
+            return read(line);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    protected abstract TaskImportRow read(long line) throws IOException;
+
+    protected static TaskImportRow toRow(long line, String title, String description, String status, String priority, String executorId) {
+        TaskCreateRequestDto task = new TaskCreateRequestDto();
+        task.setTitle(title);
+        task.setDescription(description == null || description.isEmpty() ? null : description);
+        try {
+            task.setPriority(priority == null || priority.isEmpty() ? null : Priority.valueOf(priority));
+            task.setExecutorId(executorId == null || executorId.isEmpty() ? null : Long.valueOf(executorId));
+            return new TaskImportRow(line, task, status == null || status.isEmpty() ? Status.WAITING : Status.valueOf(status));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Строка " + line + ": некорректное значение статуса, приоритета или ID исполнителя");
+        }
+    }
+
+    private static class NdjsonReader extends TaskImportReader {
+
+        private final MappingIterator<JsonNode> iterator;
+
+        NdjsonReader(InputStream inputStream, ObjectMapper objectMapper) throws IOException {
+            this.iterator = objectMapper.readerFor(JsonNode.class).readValues(inputStream);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        protected TaskImportRow read(long line) {
+            JsonNode node = iterator.next();
+            return toRow(line, text(node, "title"), text(node, "description"), text(node, "status"),
+                    text(node, "priority"), text(node, "executorId"));
+        }
+
+        private static String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+    }
+
+    private static class CsvReader extends TaskImportReader {
+
+        private final Reader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private List<String> record;
+
+        CsvReader(InputStream inputStream) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new BadRequestException("Отсутствует заголовок CSV");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i), i);
+            }
+            if (!columns.containsKey("title") || !columns.containsKey("executor_id")) {
+                throw new BadRequestException("В заголовке CSV должны быть столбцы title и executor_id");
+            }
+            this.record = readRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return record != null;
+        }
+
+        @Override
+        protected TaskImportRow read(long line) throws IOException {
+            List<String> current = record;
+            record = readRecord();
+            return toRow(line, column(current, "title"), column(current, "description"), column(current, "status"),
+                    column(current, "priority"), column(current, "executor_id"));
+        }
+
+        private String column(List<String> values, String name) {
+            Integer index = columns.get(name);
+            return index == null || index >= values.size() ? null : values.get(index);
+        }
+
+        /**
+         * Читает одну запись по RFC 4180: значения в кавычках могут содержать запятые и переводы строк.
+         */
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            value.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    value.append((char) c);
+                }
+                c = reader.read();
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+}
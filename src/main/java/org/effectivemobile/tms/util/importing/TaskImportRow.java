@@ -0,0 +1,10 @@
+package org.effectivemobile.tms.util.importing;
+
+import org.effectivemobile.tms.dto.task.TaskCreateRequestDto;
+import org.effectivemobile.tms.util.enums.Status;
+
+/**
+ * Задача из импортируемого файла вместе с номером записи, по которому о ней сообщается в ошибках.
+ */
+public record TaskImportRow(long line, TaskCreateRequestDto task, Status status) {
+}
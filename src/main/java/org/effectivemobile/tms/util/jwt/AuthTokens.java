@@ -0,0 +1,7 @@
+package org.effectivemobile.tms.util.jwt;
+
+/**
+ * JWT для доступа к API и токен обновления, по которому выдаётся следующая пара.
+ */
+public record AuthTokens(String accessToken, String refreshToken) {
+}
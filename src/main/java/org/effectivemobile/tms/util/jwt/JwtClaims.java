@@ -0,0 +1,16 @@
+package org.effectivemobile.tms.util.jwt;
+
+import org.effectivemobile.tms.util.enums.Role;
+
+import java.time.Instant;
+
+public record JwtClaims(String subject, Instant issuedAt, Instant expiration, Long userId, Role role) {
+
+    public boolean isExpired(Instant now) {
+        return !expiration.isAfter(now);
+    }
+
+    public boolean isSelfContained() {
+        return userId != null && role != null;
+    }
+}
@@ -0,0 +1,6 @@
+package org.effectivemobile.tms.util.jwt;
+
+public class TokenHeaders {
+
+    public static final String REFRESH_TOKEN = "X-Refresh-Token";
+}
@@ -0,0 +1,7 @@
+package org.effectivemobile.tms.util.pagination;
+
+public class PaginationHeaders {
+
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+    public static final String TOTAL_COUNT = "X-Total-Count";
+}
@@ -1,19 +1,33 @@
 package org.effectivemobile.tms.util.specification;
 
-import javax.persistence.criteria.Join;
 import org.effectivemobile.tms.entity.Task;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Role;
 import org.springframework.data.jpa.domain.Specification;
 
 public class TaskSpecificationUtils {
 
+    /**
+     * Задачи, доступные пользователю: администратору - все с фильтрацией по исполнителю и автору,
+     * исполнителю - только свои, фильтры при этом игнорируются. Задачи, поставленные на фоновое удаление, не видны никому.
+     */
+    public static Specification<Task> isVisibleTo(User user, Long executorId, Long authorId) {
+        if (user.getRole() == Role.ADMIN) {
+            return Specification.where(isNotDeleting()).and(hasExecutor(executorId)).and(hasAuthor(authorId));
+        }
+        return Specification.where(isNotDeleting()).and(hasExecutor(user.getId()));
+    }
+
+    public static Specification<Task> isNotDeleting() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.isNull(root.get("deletingAt"));
+    }
+
     public static Specification<Task> hasExecutor(Long executorId) {
         return (root, query, criteriaBuilder) -> {
             if (executorId == null) {
                 return criteriaBuilder.conjunction();
             }
-            Join<Task, User> executorJoin = root.join("executor");
-            return criteriaBuilder.equal(executorJoin.get("id"), executorId);
+            return criteriaBuilder.equal(root.get("executor").get("id"), executorId);
         };
     }
 
@@ -22,8 +36,16 @@ public class TaskSpecificationUtils {
             if (authorId == null) {
                 return criteriaBuilder.conjunction();
             }
-            Join<Task, User> authorJoin = root.join("author");
-            return criteriaBuilder.equal(authorJoin.get("id"), authorId);
+            return criteriaBuilder.equal(root.get("author").get("id"), authorId);
+        };
+    }
+
+    public static Specification<Task> hasIdGreaterThan(Long id) {
+        return (root, query, criteriaBuilder) -> {
+            if (id == null) {
+                return criteriaBuilder.conjunction();
+            }
+            return criteriaBuilder.greaterThan(root.get("id"), id);
         };
     }
 }
@@ -0,0 +1,10 @@
+package org.effectivemobile.tms.util.statistics;
+
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Status;
+
+/**
+ * Количество задач с данными статусом и приоритетом.
+ */
+public record TaskCount(Status status, Priority priority, long count) {
+}
@@ -0,0 +1,19 @@
+package org.effectivemobile.tms.util.suggest;
+
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.entity.Task;
+
+/**
+ * Данные задачи, по которым строятся подсказки: название и поля, определяющие её видимость.
+ * Версия позволяет не затереть более новое состояние задачи более старым.
+ */
+public record TaskTitle(Long id, String title, Long executorId, Long authorId, Long version) {
+
+    public static TaskTitle of(Task task) {
+        return new TaskTitle(task.getId(), task.getTitle(), task.getExecutor().getId(), task.getAuthor().getId(), task.getVersion());
+    }
+
+    public static TaskTitle of(TaskResponseDto task) {
+        return new TaskTitle(task.getId(), task.getTitle(), task.getExecutorId(), task.getAuthorId(), task.getVersion());
+    }
+}
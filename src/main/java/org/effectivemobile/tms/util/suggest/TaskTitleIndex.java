@@ -0,0 +1,210 @@
+package org.effectivemobile.tms.util.suggest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Префиксный индекс слов из названий задач. Каждое слово хранится в упорядоченном множестве дважды:
+ * в общей области и в области исполнителя, поэтому подсказки для исполнителя не просматривают чужие задачи.
+ * Поиск по префиксу - это обход диапазона множества, который заканчивается после limit подходящих задач.
+ * Потокобезопасен: запись сериализуется по ID задачи, чтение не блокируется.
+ * <p>
+ * Удалённая задача некоторое время хранится как отметка с версией, чтобы запоздавшее добавление
+ * той же или более старой версии, например после параллельного изменения, не вернуло её в индекс.
+ */
+public class TaskTitleIndex {
+
+    private static final long ALL_SCOPE = 0;
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Duration TOMBSTONE_TTL = Duration.ofMinutes(1);
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Key> keys = new ConcurrentSkipListSet<>();
+    private final Queue<Entry> tombstones = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long tombstoneTtlNanos;
+
+    public TaskTitleIndex() {
+        this(TOMBSTONE_TTL);
+    }
+
+    public TaskTitleIndex(Duration tombstoneTtl) {
+        this.tombstoneTtlNanos = tombstoneTtl.toNanos();
+    }
+
+    /**
+     * Добавляет задачу или заменяет её прежнее состояние, если оно не новее переданного.
+     * Удалённая задача возвращается, только если переданная версия новее удалённой.
+     */
+    public void put(TaskTitle task) {
+        put(task, false);
+    }
+
+    /**
+     * Возвращает задачу, удалённую из индекса без изменения версии, например при переносе в архив.
+     */
+    public void restore(TaskTitle task) {
+        put(task, true);
+    }
+
+    /**
+     * Удаляет задачу и оставляет отметку с её версией на момент удаления.
+     */
+    public void remove(Long id, Long version) {
+        pruneTombstones();
+        Entry tombstone = new Entry(new TaskTitle(id, null, null, null, version), Set.of(), System.nanoTime());
+        entries.compute(id, (key, current) -> {
+            if (current != null && !current.isRemoved()) {
+                current.tokens().forEach(token -> removeKeys(current.task(), token));
+                size.decrementAndGet();
+            }
+            return tombstone;
+        });
+        tombstones.add(tombstone);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void put(TaskTitle task, boolean restore) {
+        entries.compute(task.id(), (id, current) -> {
+            if (current != null) {
+                if (current.isRemoved()) {
+                    if (restore ? isNewer(current.task(), task) : !isNewer(task, current.task())) {
+                        return current;
+                    }
+                } else {
+                    if (isNewer(current.task(), task)) {
+                        return current;
+                    }
+                    current.tokens().forEach(token -> removeKeys(current.task(), token));
+                    size.decrementAndGet();
+                }
+            }
+            Entry entry = new Entry(task, tokenize(task.title()), null);
+            entry.tokens().forEach(token -> addKeys(task, token));
+            size.incrementAndGet();
+            return entry;
+        });
+    }
+
+    /**
+     * Отметка нужна только до тех пор, пока могут прийти изменения, зафиксированные до удаления,
+     * поэтому отметки старше заданного срока удаляются. Отметка, уже заменённая задачей, не трогает её.
+     */
+    private void pruneTombstones() {
+        long now = System.nanoTime();
+        Entry tombstone;
+        while ((tombstone = tombstones.peek()) != null && now - tombstone.removedAt() >= tombstoneTtlNanos) {
+            if (tombstones.remove(tombstone)) {
+                entries.remove(tombstone.task().id(), tombstone);
+            }
+        }
+    }
+
+    /**
+     * Задачи, в названии которых каждое слово запроса является началом какого-либо слова.
+     * Кандидаты берутся по самому длинному слову запроса: сначала точные совпадения слова,
+     * затем более длинные слова в алфавитном порядке, при равенстве - в порядке ID.
+     */
+    public List<TaskTitle> find(String prefix, Long executorId, Long authorId, int limit) {
+        List<String> query = List.copyOf(tokenize(prefix));
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        String word = query.stream().max(Comparator.comparingInt(String::length)).orElseThrow();
+        long scope = executorId == null ? ALL_SCOPE : executorId;
+
+        List<TaskTitle> result = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        for (Key key : keys.tailSet(new Key(scope, word, Long.MIN_VALUE))) {
+            if (key.scope() != scope || !key.token().startsWith(word)) {
+                break;
+            }
+            Entry entry = entries.get(key.taskId());
+            if (entry == null || entry.isRemoved() || !seen.add(key.taskId()) || !entry.matches(query, executorId, authorId)) {
+                continue;
+            }
+            result.add(entry.task());
+            if (result.size() == limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Слова названия в нижнем регистре, буква ё заменяется на е.
+     */
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text != null) {
+            for (String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT).replace('ё', 'е'))) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isNewer(TaskTitle current, TaskTitle task) {
+        return current.version() != null && task.version() != null && current.version() > task.version();
+    }
+
+    private void addKeys(TaskTitle task, String token) {
+        keys.add(new Key(ALL_SCOPE, token, task.id()));
+        keys.add(new Key(task.executorId(), token, task.id()));
+    }
+
+    private void removeKeys(TaskTitle task, String token) {
+        keys.remove(new Key(ALL_SCOPE, token, task.id()));
+        keys.remove(new Key(task.executorId(), token, task.id()));
+    }
+
+    /**
+     * Для удалённой задачи removedAt - время удаления по System.nanoTime(), для остальных - null.
+     */
+    private record Entry(TaskTitle task, Set<String> tokens, Long removedAt) {
+
+        boolean isRemoved() {
+            return removedAt != null;
+        }
+
+        boolean matches(List<String> query, Long executorId, Long authorId) {
+            if (executorId != null && !executorId.equals(task.executorId())
+                    || authorId != null && !authorId.equals(task.authorId())) {
+                return false;
+            }
+            return query.stream().allMatch(word -> tokens.stream().anyMatch(token -> token.startsWith(word)));
+        }
+    }
+
+    private record Key(long scope, String token, long taskId) implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator.comparingLong(Key::scope)
+                .thenComparing(Key::token)
+                .thenComparingLong(Key::taskId);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+-- Время завершения задачи, по которому завершённые задачи переносятся в архив.
+-- Для уже завершённых задач оно неизвестно, поэтому отсчитывается от момента миграции.
+ALTER TABLE t.tasks ADD COLUMN completed_at TIMESTAMPTZ;
+UPDATE t.tasks SET completed_at = now() WHERE status = 'COMPLETED';
+
+-- Hibernate не знает о столбце, поэтому его ведёт триггер: время ставится при переходе в COMPLETED
+-- и сбрасывается при выходе из него. Явно переданное при вставке значение (возврат из архива) сохраняется.
+CREATE FUNCTION t.tasks_completed_at_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF NEW.status <> 'COMPLETED' THEN
+        NEW.completed_at := NULL;
+    ELSIF TG_OP = 'INSERT' THEN
+        NEW.completed_at := coalesce(NEW.completed_at, now());
+    ELSIF OLD.status <> 'COMPLETED' THEN
+        NEW.completed_at := now();
+    END IF;
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER tasks_completed_at_update
+    BEFORE INSERT OR UPDATE OF status ON t.tasks
+    FOR EACH ROW EXECUTE FUNCTION t.tasks_completed_at_trigger();
+
+-- Поиск задач для архивации: WHERE status = 'COMPLETED' AND completed_at < ? ORDER BY completed_at
+CREATE INDEX tasks_completed_at_idx ON t.tasks (completed_at) WHERE status = 'COMPLETED';
+
+-- Архив завершённых задач и их комментариев. ID сохраняются, поэтому задача возвращается из архива
+-- с теми же ID и версией, и ETag, выданный до архивации, остаётся действительным.
+CREATE TABLE t.tasks_archive (
+    id BIGINT PRIMARY KEY,
+    title TEXT NOT NULL,
+    description TEXT,
+    status TEXT NOT NULL,
+    priority TEXT NOT NULL,
+    executor_id BIGINT NOT NULL REFERENCES t.users (id),
+    author_id BIGINT NOT NULL REFERENCES t.users (id),
+    version BIGINT NOT NULL,
+    completed_at TIMESTAMPTZ,
+    archived_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- GET /tasks?includeArchived=true: те же пути доступа, что и для t.tasks
+CREATE INDEX tasks_archive_executor_id_id_idx ON t.tasks_archive (executor_id, id);
+CREATE INDEX tasks_archive_author_id_id_idx ON t.tasks_archive (author_id, id);
+
+CREATE TABLE t.comments_archive (
+    id BIGINT PRIMARY KEY,
+    task_id BIGINT NOT NULL REFERENCES t.tasks_archive (id) ON DELETE CASCADE,
+    content TEXT NOT NULL,
+    author_id BIGINT NOT NULL REFERENCES t.users (id),
+    version BIGINT NOT NULL
+);
+
+CREATE INDEX comments_archive_task_id_id_idx ON t.comments_archive (task_id, id);
+
+-- Архивные задачи учитываются в счётчиках статистики: перенос в архив и обратно
+-- вычитает задачу из одной таблицы и добавляет в другую, не меняя итог.
+-- Строки архива не изменяются, поэтому триггер на UPDATE не нужен.
+CREATE TRIGGER tasks_archive_counters_insert
+    AFTER INSERT ON t.tasks_archive REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_counters_trigger();
+
+CREATE TRIGGER tasks_archive_counters_delete
+    AFTER DELETE ON t.tasks_archive REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_counters_trigger();
@@ -0,0 +1,13 @@
+-- Строка t.refresh_tokens - сеанс входа (семейство токенов обновления), её ID - ID сеанса.
+-- Срок действия сеанса задаётся при входе и при обмене токена больше не продлевается.
+-- Хэш предыдущего токена сеанса хранится, чтобы распознать повторное предъявление уже обменянного,
+-- то есть перехваченного, токена и закрыть весь сеанс.
+ALTER TABLE t.refresh_tokens ADD COLUMN previous_token_hash TEXT UNIQUE;
+
+-- Роль пользователя при входе: если роль изменилась, сеанс закрывается при следующем обмене токена.
+ALTER TABLE t.refresh_tokens ADD COLUMN role TEXT CHECK (role IN ('USER', 'ADMIN'));
+UPDATE t.refresh_tokens r SET role = u.role FROM t.users u WHERE u.id = r.user_id;
+ALTER TABLE t.refresh_tokens ALTER COLUMN role SET NOT NULL;
+
+-- Закрытие всех сеансов пользователя: WHERE user_id = ?
+CREATE INDEX refresh_tokens_user_id_idx ON t.refresh_tokens (user_id);
@@ -0,0 +1,43 @@
+-- Ревизия комментариев задачи для ETag страниц комментариев. Она увеличивается при каждом добавлении,
+-- изменении и удалении комментариев задачи, поэтому ETag меняется при любом изменении набора комментариев,
+-- в отличие от количества, максимального ID и суммы версий, которые совпадают, например, после удаления
+-- одного комментария и изменения другого. Столбец не индексируется, и обновление строки задачи остаётся HOT.
+ALTER TABLE t.tasks ADD COLUMN comments_version BIGINT NOT NULL DEFAULT 0;
+
+-- Ревизия переносится в архив и обратно вместе с задачей и после возврата продолжает расти,
+-- поэтому ETag, выданный до переноса, не совпадёт с новым.
+ALTER TABLE t.tasks_archive ADD COLUMN comments_version BIGINT NOT NULL DEFAULT 0;
+
+-- Ревизия увеличивается один раз за оператор для каждой затронутой задачи.
+-- При каскадном удалении задачи её строка уже удалена, и UPDATE ничего не делает.
+CREATE FUNCTION t.comments_version_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE t.tasks SET comments_version = comments_version + 1
+        WHERE id IN (SELECT task_id FROM new_rows);
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE t.tasks SET comments_version = comments_version + 1
+        WHERE id IN (SELECT task_id FROM old_rows);
+    ELSE
+        UPDATE t.tasks SET comments_version = comments_version + 1
+        WHERE id IN (SELECT task_id FROM old_rows UNION SELECT task_id FROM new_rows);
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER comments_version_insert
+    AFTER INSERT ON t.comments
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.comments_version_trigger();
+
+CREATE TRIGGER comments_version_update
+    AFTER UPDATE ON t.comments
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.comments_version_trigger();
+
+CREATE TRIGGER comments_version_delete
+    AFTER DELETE ON t.comments
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.comments_version_trigger();
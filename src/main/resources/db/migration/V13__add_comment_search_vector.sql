@@ -0,0 +1,34 @@
+-- Комментарии индексируются отдельно от задачи: вектор комментария вычисляется из его текста при записи строки,
+-- а поиск находит задачу по её вектору или по векторам её комментариев. Изменение комментария больше
+-- не пересобирает вектор задачи из текста всех её комментариев, а удаление комментариев большой задачи
+-- не пересчитывает его на каждый оператор.
+DROP TRIGGER comments_search_vector_insert ON t.comments;
+DROP TRIGGER comments_search_vector_update ON t.comments;
+DROP TRIGGER comments_search_vector_delete ON t.comments;
+DROP FUNCTION t.comments_search_vector_trigger();
+
+-- Вес C сохраняет прежнее соотношение рангов: совпадение в названии важнее, чем в комментарии.
+ALTER TABLE t.comments ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (setweight(to_tsvector('russian', coalesce(content, '')), 'C')) STORED;
+
+CREATE INDEX comments_search_vector_idx ON t.comments USING GIN (search_vector);
+
+-- Вектор задачи складывается только из названия (вес A) и описания (B).
+CREATE FUNCTION t.task_search_vector(title TEXT, description TEXT) RETURNS tsvector
+    LANGUAGE sql IMMUTABLE AS $$
+SELECT setweight(to_tsvector('russian', coalesce($1, '')), 'A')
+    || setweight(to_tsvector('russian', coalesce($2, '')), 'B')
+$$;
+
+CREATE OR REPLACE FUNCTION t.tasks_search_vector_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    NEW.search_vector := t.task_search_vector(NEW.title, NEW.description);
+    RETURN NEW;
+END
+$$;
+
+DROP FUNCTION t.task_search_vector(TEXT, TEXT, TEXT);
+DROP FUNCTION t.task_comments_text(BIGINT);
+
+UPDATE t.tasks SET search_vector = t.task_search_vector(title, description);
@@ -0,0 +1,6 @@
+-- Время, когда задача с большим числом комментариев поставлена на фоновое удаление. Такая задача
+-- уже скрыта от чтения и изменения, а удаление, прерванное остановкой приложения или ошибкой,
+-- возобновляется по этой отметке. Удаляемых задач единицы, поэтому индекс частичный.
+ALTER TABLE t.tasks ADD COLUMN deleting_at TIMESTAMPTZ;
+
+CREATE INDEX tasks_deleting_at_idx ON t.tasks (deleting_at) WHERE deleting_at IS NOT NULL;
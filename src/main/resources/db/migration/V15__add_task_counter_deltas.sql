@@ -0,0 +1,72 @@
+-- Триггеры больше не изменяют строки t.task_counters, а дописывают изменения в журнал t.task_counter_deltas.
+-- Раньше каждая новая задача автора обновляла одну и ту же строку счётчика, и её блокировка держалась
+-- до фиксации: параллельное создание задач одним автором выполнялось по очереди, а импорт через COPY
+-- блокировал остальные создания задач этим автором на всё время импорта. Строки журнала не имеют ключа
+-- и не конфликтуют друг с другом. Значение счётчика - сумма строки t.task_counters и строк журнала;
+-- периодическая свёртка переносит журнал в t.task_counters.
+CREATE TABLE t.task_counter_deltas (
+    dimension CHAR(1) NOT NULL,
+    user_id BIGINT NOT NULL,
+    status TEXT NOT NULL,
+    priority TEXT NOT NULL,
+    delta BIGINT NOT NULL
+);
+
+CREATE INDEX task_counter_deltas_dimension_user_id_idx ON t.task_counter_deltas (dimension, user_id);
+
+-- Счётчики по всем задачам (dimension = 'T', user_id = 0): статистика администратора без фильтра
+-- читает несколько строк вместо суммирования счётчиков всех исполнителей.
+ALTER TABLE t.task_counters DROP CONSTRAINT task_counters_dimension_check;
+ALTER TABLE t.task_counters ADD CONSTRAINT task_counters_dimension_check CHECK (dimension IN ('E', 'A', 'T'));
+
+INSERT INTO t.task_counters (dimension, user_id, status, priority, count)
+SELECT 'T', 0, status, priority, sum(count) FROM t.task_counters WHERE dimension = 'E' GROUP BY status, priority;
+
+-- Изменения по-прежнему группируются по оператору, поэтому массовые UPDATE и импорт через COPY
+-- добавляют по одной строке журнала на счётчик.
+CREATE OR REPLACE FUNCTION t.tasks_counters_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows
+            UNION ALL
+            SELECT 'T', 0, status, priority, 1 FROM new_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows
+            UNION ALL
+            SELECT 'T', 0, status, priority, 1 FROM new_rows
+            UNION ALL
+            SELECT 'E', executor_id, status, priority, -1 FROM old_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows
+            UNION ALL
+            SELECT 'T', 0, status, priority, -1 FROM old_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    ELSE
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, -1 AS delta FROM old_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows
+            UNION ALL
+            SELECT 'T', 0, status, priority, -1 FROM old_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    END IF;
+    RETURN NULL;
+END
+$$;
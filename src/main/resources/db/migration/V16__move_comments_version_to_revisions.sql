@@ -0,0 +1,68 @@
+-- Ревизия комментариев хранится в отдельной таблице, а не в строке задачи. Раньше каждое изменение комментария
+-- обновляло строку t.tasks: блокировало её до фиксации наравне с изменением самой задачи, оставляло мёртвую
+-- версию строки задачи и вызывало триггеры t.tasks, в том числе триггер счётчиков. Теперь изменение комментария
+-- блокирует только строку ревизии своей задачи и не затрагивает ни задачу, ни её триггеры.
+-- Строка ревизии не привязана к таблице задачи, поэтому сохраняется при переносе задачи в архив и обратно,
+-- и ETag, выданный до переноса, не повторяется.
+CREATE TABLE t.task_comment_revisions (
+    task_id BIGINT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO t.task_comment_revisions (task_id, version)
+SELECT id, comments_version FROM t.tasks WHERE comments_version > 0
+UNION ALL
+SELECT id, comments_version FROM t.tasks_archive WHERE comments_version > 0;
+
+-- Ревизия увеличивается один раз за оператор для каждой затронутой задачи. Удаление комментариев,
+-- вызванное удалением самой задачи, ревизию не создаёт: задачи уже нет в t.tasks.
+CREATE OR REPLACE FUNCTION t.comments_version_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO t.task_comment_revisions AS r (task_id, version)
+        SELECT DISTINCT task_id, 1 FROM new_rows ORDER BY task_id
+        ON CONFLICT (task_id) DO UPDATE SET version = r.version + 1;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO t.task_comment_revisions AS r (task_id, version)
+        SELECT DISTINCT task_id, 1 FROM old_rows o WHERE EXISTS (SELECT 1 FROM t.tasks t WHERE t.id = o.task_id)
+        ORDER BY task_id
+        ON CONFLICT (task_id) DO UPDATE SET version = r.version + 1;
+    ELSE
+        INSERT INTO t.task_comment_revisions AS r (task_id, version)
+        SELECT task_id, 1 FROM (SELECT task_id FROM old_rows UNION SELECT task_id FROM new_rows) changed
+        ORDER BY task_id
+        ON CONFLICT (task_id) DO UPDATE SET version = r.version + 1;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+-- Ревизия удаляется вместе с задачей. Перенос в архив и обратно сначала добавляет задачу в другую таблицу,
+-- а затем удаляет из прежней, поэтому ревизия перенесённой задачи остаётся.
+CREATE FUNCTION t.task_comment_revisions_cleanup_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_TABLE_NAME = 'tasks' THEN
+        DELETE FROM t.task_comment_revisions r
+        WHERE r.task_id IN (SELECT id FROM old_rows)
+          AND NOT EXISTS (SELECT 1 FROM t.tasks_archive a WHERE a.id = r.task_id);
+    ELSE
+        DELETE FROM t.task_comment_revisions r
+        WHERE r.task_id IN (SELECT id FROM old_rows)
+          AND NOT EXISTS (SELECT 1 FROM t.tasks t WHERE t.id = r.task_id);
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER tasks_comment_revisions_delete
+    AFTER DELETE ON t.tasks REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.task_comment_revisions_cleanup_trigger();
+
+CREATE TRIGGER tasks_archive_comment_revisions_delete
+    AFTER DELETE ON t.tasks_archive REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.task_comment_revisions_cleanup_trigger();
+
+ALTER TABLE t.tasks DROP COLUMN comments_version;
+ALTER TABLE t.tasks_archive DROP COLUMN comments_version;
@@ -0,0 +1,103 @@
+-- Задача, поставленная на фоновое удаление, уже не видна при чтении, поэтому перестаёт учитываться
+-- в счётчиках в момент постановки: отметка deleting_at вычитает задачу, а её окончательное удаление
+-- счётчики не меняет.
+CREATE OR REPLACE FUNCTION t.tasks_counters_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'T', 0, status, priority, 1 FROM new_rows WHERE deleting_at IS NULL
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'T', 0, status, priority, 1 FROM new_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'E', executor_id, status, priority, -1 FROM old_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'T', 0, status, priority, -1 FROM old_rows WHERE deleting_at IS NULL
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    ELSE
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, -1 AS delta FROM old_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows WHERE deleting_at IS NULL
+            UNION ALL
+            SELECT 'T', 0, status, priority, -1 FROM old_rows WHERE deleting_at IS NULL
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+-- В архиве нет отметки deleting_at, поэтому у архива своя функция без этого условия.
+-- Строки архива не изменяются, и ветка UPDATE не нужна.
+CREATE FUNCTION t.tasks_archive_counters_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows
+            UNION ALL
+            SELECT 'T', 0, status, priority, 1 FROM new_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    ELSE
+        INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, -1 AS delta FROM old_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows
+            UNION ALL
+            SELECT 'T', 0, status, priority, -1 FROM old_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+DROP TRIGGER tasks_archive_counters_insert ON t.tasks_archive;
+DROP TRIGGER tasks_archive_counters_delete ON t.tasks_archive;
+
+CREATE TRIGGER tasks_archive_counters_insert
+    AFTER INSERT ON t.tasks_archive REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_archive_counters_trigger();
+
+CREATE TRIGGER tasks_archive_counters_delete
+    AFTER DELETE ON t.tasks_archive REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_archive_counters_trigger();
+
+-- Задачи, уже поставленные на удаление, вычитаются из счётчиков.
+INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+SELECT dimension, user_id, status, priority, -count(*) FROM (
+    SELECT 'E' AS dimension, executor_id AS user_id, status, priority FROM t.tasks WHERE deleting_at IS NOT NULL
+    UNION ALL
+    SELECT 'A', author_id, status, priority FROM t.tasks WHERE deleting_at IS NOT NULL
+    UNION ALL
+    SELECT 'T', 0, status, priority FROM t.tasks WHERE deleting_at IS NOT NULL
+) d
+GROUP BY dimension, user_id, status, priority;
@@ -1,11 +1,3 @@
-CREATE SCHEMA t;
-
-DROP TABLE IF EXISTS t.users;
-
-DROP TABLE IF EXISTS t.tasks;
-
-DROP TABLE IF EXISTS t.comments;
-
 CREATE TABLE t.users (
        id BIGSERIAL PRIMARY KEY,
        username TEXT NOT NULL UNIQUE,
@@ -28,4 +20,4 @@ CREATE TABLE t.comments (
       task_id BIGINT NOT NULL REFERENCES t.tasks (id),
       content TEXT NOT NULL,
       author_id INT NOT NULL REFERENCES t.users (id)
-);
\ No newline at end of file
+);
@@ -0,0 +1,8 @@
+-- GET /tasks для исполнителя и фильтр по исполнителю: WHERE executor_id = ? [AND id > ?] ORDER BY id
+CREATE INDEX tasks_executor_id_id_idx ON t.tasks (executor_id, id);
+
+-- Фильтр по автору: WHERE author_id = ? [AND id > ?] ORDER BY id
+CREATE INDEX tasks_author_id_id_idx ON t.tasks (author_id, id);
+
+-- GET /tasks/{taskId}/comments: WHERE task_id = ? ORDER BY id
+CREATE INDEX comments_task_id_id_idx ON t.comments (task_id, id);
@@ -0,0 +1,4 @@
+-- Hibernate выделяет ID блоками по 50 (pooled optimizer), шаг последовательностей должен совпадать с allocationSize
+ALTER SEQUENCE t.users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE t.tasks_id_seq INCREMENT BY 50;
+ALTER SEQUENCE t.comments_id_seq INCREMENT BY 50;
@@ -0,0 +1,3 @@
+-- Версии для ETag и оптимистической блокировки задач и комментариев
+ALTER TABLE t.tasks ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE t.comments ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
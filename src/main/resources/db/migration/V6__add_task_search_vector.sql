@@ -0,0 +1,54 @@
+-- Полнотекстовый поиск GET /tasks/search: WHERE search_vector @@ websearch_to_tsquery('russian', ?)
+-- Вектор складывается из названия (вес A), описания (B) и текста комментариев (C).
+-- Конфигурация russian приводит кириллические слова к основе русским стеммером, латинские - английским.
+ALTER TABLE t.tasks ADD COLUMN search_vector tsvector;
+
+CREATE FUNCTION t.task_search_vector(title TEXT, description TEXT, comments TEXT) RETURNS tsvector
+    LANGUAGE sql IMMUTABLE AS $$
+SELECT setweight(to_tsvector('russian', coalesce($1, '')), 'A')
+    || setweight(to_tsvector('russian', coalesce($2, '')), 'B')
+    || setweight(to_tsvector('russian', coalesce($3, '')), 'C')
+$$;
+
+CREATE FUNCTION t.task_comments_text(task_id BIGINT) RETURNS TEXT
+    LANGUAGE sql STABLE AS $$
+SELECT string_agg(content, ' ' ORDER BY id) FROM t.comments WHERE comments.task_id = $1
+$$;
+
+UPDATE t.tasks SET search_vector = t.task_search_vector(title, description, t.task_comments_text(id));
+
+CREATE INDEX tasks_search_vector_idx ON t.tasks USING GIN (search_vector);
+
+-- У новой задачи ещё нет комментариев, поэтому при вставке они не читаются.
+CREATE FUNCTION t.tasks_search_vector_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    NEW.search_vector := t.task_search_vector(NEW.title, NEW.description,
+            CASE WHEN TG_OP = 'INSERT' THEN NULL ELSE t.task_comments_text(NEW.id) END);
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER tasks_search_vector_update
+    BEFORE INSERT OR UPDATE OF title, description ON t.tasks
+    FOR EACH ROW EXECUTE FUNCTION t.tasks_search_vector_trigger();
+
+-- Изменение комментариев пересчитывает вектор задачи, не затрагивая её версию.
+CREATE FUNCTION t.comments_search_vector_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        UPDATE t.tasks SET search_vector = t.task_search_vector(title, description, t.task_comments_text(id))
+        WHERE id = OLD.task_id;
+    END IF;
+    IF TG_OP = 'INSERT' OR (TG_OP = 'UPDATE' AND NEW.task_id <> OLD.task_id) THEN
+        UPDATE t.tasks SET search_vector = t.task_search_vector(title, description, t.task_comments_text(id))
+        WHERE id = NEW.task_id;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER comments_search_vector_update
+    AFTER INSERT OR UPDATE OF task_id, content OR DELETE ON t.comments
+    FOR EACH ROW EXECUTE FUNCTION t.comments_search_vector_trigger();
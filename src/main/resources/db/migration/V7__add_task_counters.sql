@@ -0,0 +1,76 @@
+-- Счётчики задач для GET /tasks/statistics: количество задач каждого статуса и приоритета
+-- у каждого исполнителя (dimension = 'E') и у каждого автора (dimension = 'A').
+CREATE TABLE t.task_counters (
+    dimension CHAR(1) NOT NULL CHECK (dimension IN ('E', 'A')),
+    user_id BIGINT NOT NULL,
+    status TEXT NOT NULL,
+    priority TEXT NOT NULL,
+    count BIGINT NOT NULL,
+    PRIMARY KEY (dimension, user_id, status, priority)
+);
+
+INSERT INTO t.task_counters (dimension, user_id, status, priority, count)
+SELECT 'E', executor_id, status, priority, count(*) FROM t.tasks GROUP BY executor_id, status, priority
+UNION ALL
+SELECT 'A', author_id, status, priority, count(*) FROM t.tasks GROUP BY author_id, status, priority;
+
+-- Счётчики меняются одним запросом на оператор, поэтому массовые UPDATE и импорт через COPY
+-- изменяют каждый счётчик один раз. Строки счётчиков блокируются в порядке ключа, чтобы параллельные
+-- массовые изменения не взаимоблокировались. Нулевые изменения (например, смена названия) отбрасываются.
+-- Таблицы переходов доступны только в ветке своей операции, остальные ветки не планируются.
+CREATE FUNCTION t.tasks_counters_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO t.task_counters AS c (dimension, user_id, status, priority, count)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0
+        ORDER BY dimension, user_id, status, priority
+        ON CONFLICT (dimension, user_id, status, priority) DO UPDATE SET count = c.count + EXCLUDED.count;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO t.task_counters AS c (dimension, user_id, status, priority, count)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, 1 FROM new_rows
+            UNION ALL
+            SELECT 'E', executor_id, status, priority, -1 FROM old_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0
+        ORDER BY dimension, user_id, status, priority
+        ON CONFLICT (dimension, user_id, status, priority) DO UPDATE SET count = c.count + EXCLUDED.count;
+    ELSE
+        INSERT INTO t.task_counters AS c (dimension, user_id, status, priority, count)
+        SELECT dimension, user_id, status, priority, sum(delta) FROM (
+            SELECT 'E' AS dimension, executor_id AS user_id, status, priority, -1 AS delta FROM old_rows
+            UNION ALL
+            SELECT 'A', author_id, status, priority, -1 FROM old_rows
+        ) d
+        GROUP BY dimension, user_id, status, priority
+        HAVING sum(delta) <> 0
+        ORDER BY dimension, user_id, status, priority
+        ON CONFLICT (dimension, user_id, status, priority) DO UPDATE SET count = c.count + EXCLUDED.count;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER tasks_counters_insert
+    AFTER INSERT ON t.tasks REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_counters_trigger();
+
+CREATE TRIGGER tasks_counters_update
+    AFTER UPDATE ON t.tasks REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_counters_trigger();
+
+CREATE TRIGGER tasks_counters_delete
+    AFTER DELETE ON t.tasks REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.tasks_counters_trigger();
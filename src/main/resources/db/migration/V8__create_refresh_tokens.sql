@@ -0,0 +1,14 @@
+-- Токены обновления для POST /token/refresh, по одной строке на сеанс входа.
+-- Хранится только SHA-256 токена: токен случаен, поэтому медленный хэш не нужен,
+-- а поиск выполняется по уникальному индексу. При обновлении хэш в строке заменяется новым.
+CREATE TABLE t.refresh_tokens (
+    id BIGSERIAL PRIMARY KEY,
+    token_hash TEXT NOT NULL UNIQUE,
+    user_id BIGINT NOT NULL REFERENCES t.users (id),
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+ALTER SEQUENCE t.refresh_tokens_id_seq INCREMENT BY 50;
+
+-- Удаление просроченных токенов: WHERE expires_at < ?
+CREATE INDEX refresh_tokens_expires_at_idx ON t.refresh_tokens (expires_at);
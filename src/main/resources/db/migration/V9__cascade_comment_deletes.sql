@@ -0,0 +1,46 @@
+-- Комментарии удаляются вместе с задачей каскадно в БД, без загрузки в Hibernate и DELETE на каждый комментарий.
+ALTER TABLE t.comments
+    DROP CONSTRAINT comments_task_id_fkey,
+    ADD CONSTRAINT comments_task_id_fkey FOREIGN KEY (task_id) REFERENCES t.tasks (id) ON DELETE CASCADE;
+
+-- Поисковый вектор задачи пересчитывается один раз за оператор для каждой затронутой задачи,
+-- а не на каждый комментарий: иначе удаление тысяч комментариев одним DELETE пересчитывало бы его тысячи раз.
+-- При каскадном удалении задачи её строка уже удалена, и UPDATE ничего не делает.
+DROP TRIGGER comments_search_vector_update ON t.comments;
+DROP FUNCTION t.comments_search_vector_trigger();
+
+CREATE FUNCTION t.comments_search_vector_trigger() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE t.tasks SET search_vector = t.task_search_vector(title, description, t.task_comments_text(id))
+        WHERE id IN (SELECT task_id FROM new_rows);
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE t.tasks SET search_vector = t.task_search_vector(title, description, t.task_comments_text(id))
+        WHERE id IN (SELECT task_id FROM old_rows);
+    ELSE
+        UPDATE t.tasks SET search_vector = t.task_search_vector(title, description, t.task_comments_text(id))
+        WHERE id IN (
+            SELECT unnest(ARRAY[o.task_id, n.task_id])
+            FROM old_rows o JOIN new_rows n USING (id)
+            WHERE o.task_id <> n.task_id OR o.content IS DISTINCT FROM n.content
+        );
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER comments_search_vector_insert
+    AFTER INSERT ON t.comments
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.comments_search_vector_trigger();
+
+CREATE TRIGGER comments_search_vector_update
+    AFTER UPDATE ON t.comments
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.comments_search_vector_trigger();
+
+CREATE TRIGGER comments_search_vector_delete
+    AFTER DELETE ON t.comments
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION t.comments_search_vector_trigger();
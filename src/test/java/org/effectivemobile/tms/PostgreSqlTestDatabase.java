@@ -0,0 +1,89 @@
+package org.effectivemobile.tms;
+
+import org.flywaydb.core.Flyway;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * БД PostgreSQL для тестов миграций, триггеров и запросов, которых нет в H2.
+ * Сервер задаётся переменными окружения TMS_TEST_POSTGRES_URL (например, jdbc:postgresql://localhost:5432/postgres),
+ * TMS_TEST_POSTGRES_USER и TMS_TEST_POSTGRES_PASSWORD; без них запускается контейнер Testcontainers,
+ * общий для всех тестов. Каждый тестовый класс получает свою БД, которая пересоздаётся при запуске.
+ * Если нет ни сервера, ни Docker, тесты пропускаются через {@code @EnabledIf}. Со свойством
+ * {@code tms.require-postgres=true} (профиль Maven require-postgres, используется в CI) они вместо этого падают.
+ */
+public record PostgreSqlTestDatabase(String url, String username, String password) {
+
+    public static final String AVAILABLE = "org.effectivemobile.tms.PostgreSqlTestDatabase#isAvailable";
+
+    private static final String REQUIRED_PROPERTY = "tms.require-postgres";
+
+    private static final Pattern DATABASE_NAME = Pattern.compile("^(jdbc:postgresql://[^/]+/)([^?]*)(.*)$");
+
+    private static PostgreSqlTestDatabase server;
+
+    public static boolean isAvailable() {
+        boolean available = System.getenv("TMS_TEST_POSTGRES_URL") != null || DockerClientFactory.instance().isDockerAvailable();
+        if (!available && Boolean.getBoolean(REQUIRED_PROPERTY)) {
+            throw new IllegalStateException("PostgreSQL для тестов недоступен: задайте TMS_TEST_POSTGRES_URL или запустите Docker");
+        }
+        return available;
+    }
+
+    /**
+     * Пересоздаёт пустую БД с заданным именем. Миграции не выполняются: тесты Spring выполняют их
+     * при запуске контекста, остальные - через {@link #migrate()}.
+     */
+    public static PostgreSqlTestDatabase create(String name) {
+        PostgreSqlTestDatabase server = server();
+        try (Connection connection = DriverManager.getConnection(server.url(), server.username(), server.password());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + name + " WITH (FORCE)");
+            // полнотекстовый поиск приводит слова к нижнему регистру по LC_CTYPE БД, в локали C кириллица не меняется
+            statement.execute("CREATE DATABASE " + name + " TEMPLATE template0 ENCODING 'UTF8' LC_COLLATE 'C' LC_CTYPE 'C.UTF-8'");
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Не удалось создать тестовую БД " + name, ex);
+        }
+        Matcher matcher = DATABASE_NAME.matcher(server.url());
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Неожиданный URL сервера PostgreSQL: " + server.url());
+        }
+        return new PostgreSqlTestDatabase(matcher.group(1) + name + matcher.group(3), server.username(), server.password());
+    }
+
+    public void migrate() {
+        Flyway.configure()
+                .dataSource(url, username, password)
+                .schemas("t")
+                .load()
+                .migrate();
+    }
+
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    private static synchronized PostgreSqlTestDatabase server() {
+        if (server == null) {
+            String url = System.getenv("TMS_TEST_POSTGRES_URL");
+            if (url != null) {
+                server = new PostgreSqlTestDatabase(url,
+                        System.getenv().getOrDefault("TMS_TEST_POSTGRES_USER", "postgres"),
+                        System.getenv().getOrDefault("TMS_TEST_POSTGRES_PASSWORD", ""));
+            } else {
+                // контейнер останавливается Testcontainers при завершении JVM
+                PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:16-alpine");
+                container.start();
+                server = new PostgreSqlTestDatabase(container.getJdbcUrl(), container.getUsername(), container.getPassword());
+            }
+        }
+        return server;
+    }
+}
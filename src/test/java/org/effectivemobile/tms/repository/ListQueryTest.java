@@ -0,0 +1,208 @@
+package org.effectivemobile.tms.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.config.CacheConfig;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
+import org.effectivemobile.tms.entity.Comment;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.specification.TaskSpecificationUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CacheConfig.class, SimpleMeterRegistry.class, CommentPurgeRepository.class, DatabaseSupport.class})
+class ListQueryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private CommentPurgeRepository commentPurgeRepository;
+
+    private User admin;
+
+    private User user;
+
+    private Task task;
+
+    private Comment comment;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        admin = entityManager.persist(new User(null, "admin", "password", Role.ADMIN));
+        user = entityManager.persist(new User(null, "user", "password", Role.USER));
+        for (int i = 0; i < 20; i++) {
+            Task newTask = new Task();
+            newTask.setTitle("Task " + i);
+            newTask.setStatus(Status.WAITING);
+            newTask.setPriority(Priority.LOW);
+            newTask.setAuthor(admin);
+            newTask.setExecutor(i % 2 == 0 ? user : admin);
+            task = entityManager.persist(newTask);
+        }
+        for (int i = 0; i < 20; i++) {
+            Comment newComment = new Comment();
+            newComment.setContent("Comment " + i);
+            newComment.setTask(task);
+            newComment.setAuthor(i % 2 == 0 ? user : admin);
+            comment = entityManager.persist(newComment);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findSlice_ShouldReadForeignKeysWithoutLoadingEntities() {
+        Slice<TaskResponseDto> tasks = taskRepository.findSlice(TaskSpecificationUtils.hasExecutor(user.getId()), PageRequest.of(0, 5, Sort.by("id")));
+
+        assertEquals(5, tasks.getNumberOfElements());
+        assertTrue(tasks.hasNext());
+        assertEquals(user.getId(), tasks.getContent().get(0).getExecutorId());
+        assertEquals(admin.getId(), tasks.getContent().get(0).getAuthorId());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findAllByTaskId_ShouldReadForeignKeysWithoutLoadingEntities() {
+        Slice<CommentResponseDto> comments = commentRepository.findAllByTaskId(task.getId(), PageRequest.of(0, 10));
+
+        assertEquals(10, comments.getNumberOfElements());
+        assertTrue(comments.hasNext());
+        assertEquals(task.getId(), comments.getContent().get(0).getTaskId());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findAllByTaskIdBefore_ShouldReadNewestCommentsFirst() {
+        Slice<CommentResponseDto> latest = commentRepository.findAllByTaskIdBefore(task.getId(), Long.MAX_VALUE, PageRequest.of(0, 5));
+        Long cursor = latest.getContent().get(latest.getNumberOfElements() - 1).getId();
+        Slice<CommentResponseDto> older = commentRepository.findAllByTaskIdBefore(task.getId(), cursor, PageRequest.of(0, 100));
+
+        assertEquals(comment.getId(), latest.getContent().get(0).getId());
+        assertTrue(latest.hasNext());
+        assertEquals(15, older.getNumberOfElements());
+        assertTrue(older.getContent().get(0).getId() < cursor);
+        assertFalse(older.hasNext());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamAll_ShouldReadVisibleTasksAndCommentsInIdOrder() {
+        List<TaskResponseDto> tasks;
+        List<CommentResponseDto> comments;
+        try (Stream<TaskResponseDto> taskStream = taskRepository.streamAll(TaskSpecificationUtils.isVisibleTo(admin, admin.getId(), null));
+             Stream<CommentResponseDto> commentStream = taskRepository.streamComments(TaskSpecificationUtils.isVisibleTo(admin, admin.getId(), null))) {
+            tasks = taskStream.toList();
+            comments = commentStream.toList();
+        }
+
+        assertEquals(10, tasks.size());
+        assertTrue(tasks.stream().allMatch(t -> admin.getId().equals(t.getExecutorId())));
+        assertEquals(tasks.stream().map(TaskResponseDto::getId).sorted().toList(), tasks.stream().map(TaskResponseDto::getId).toList());
+        assertEquals(20, comments.size());
+        assertEquals(comment.getId(), comments.get(comments.size() - 1).getId());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void update_ShouldReturnNewState_WhenExecutorAndVersionMatch() {
+        TaskUpdateRequestDto changes = new TaskUpdateRequestDto();
+        changes.setStatus(Status.COMPLETED);
+        changes.setExecutorId(user.getId());
+
+        Optional<TaskResponseDto> notExecutor = taskRepository.update(task.getId(), changes, user.getId(), null);
+        Optional<TaskResponseDto> staleVersion = taskRepository.update(task.getId(), changes, null, List.of(5L));
+        TaskResponseDto updated = taskRepository.update(task.getId(), changes, admin.getId(), List.of(0L)).orElseThrow();
+
+        assertTrue(notExecutor.isEmpty());
+        assertTrue(staleVersion.isEmpty());
+        assertEquals(task.getTitle(), updated.getTitle());
+        assertEquals(Status.COMPLETED, updated.getStatus());
+        assertEquals(user.getId(), updated.getExecutorId());
+        assertEquals(1L, updated.getVersion());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 10})
+    void findSlice_ShouldRunOneStatement_RegardlessOfPageSize(int size) {
+        taskRepository.findSlice(TaskSpecificationUtils.hasAuthor(admin.getId()), PageRequest.of(0, size, Sort.by("id")));
+        commentRepository.findAllByTaskId(task.getId(), PageRequest.of(0, size));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void delete_ShouldRemoveCommentsInDatabase_WithoutLoadingThem() {
+        taskRepository.delete(taskRepository.findById(task.getId()).orElseThrow());
+        entityManager.flush();
+
+        assertEquals(0, commentRepository.countByTaskId(task.getId()));
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertEquals(1, statistics.getEntityDeleteCount());
+    }
+
+    @Test
+    void deleteChunk_ShouldRemoveAtMostLimitComments() {
+        assertEquals(11, commentPurgeRepository.countUpTo(task.getId(), 11));
+        assertEquals(15, commentPurgeRepository.deleteChunk(task.getId(), 15));
+        assertEquals(5, commentPurgeRepository.deleteChunk(task.getId(), 15));
+        assertEquals(0, commentPurgeRepository.countUpTo(task.getId(), 11));
+    }
+
+    @Test
+    void findById_ShouldNotLoadAssociations_WhenOnlyTheirIdsAreRead() {
+        Comment loadedComment = commentRepository.findById(comment.getId()).orElseThrow();
+        Task loadedTask = taskRepository.findById(task.getId()).orElseThrow();
+
+        assertEquals(task.getId(), loadedComment.getTask().getId());
+        assertEquals(comment.getAuthor().getId(), loadedComment.getAuthor().getId());
+        assertEquals(task.getExecutor().getId(), loadedTask.getExecutor().getId());
+        assertEquals(task.getAuthor().getId(), loadedTask.getAuthor().getId());
+        assertEquals(2, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,308 @@
+package org.effectivemobile.tms.repository;
+
+import org.effectivemobile.tms.PostgreSqlTestDatabase;
+import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.specification.TaskSpecificationUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Проверяет планы горячих запросов репозиториев на заполненной БД PostgreSQL:
+ * ни один из них не должен приводить к последовательному сканированию таблицы.
+ * Проверяется SQL, который репозитории действительно отправляют в БД: каждый метод выполняется
+ * в откатываемой транзакции, а перехваченные запросы разбираются через EXPLAIN (GENERIC_PLAN),
+ * то есть так же, как их планирует подготовленный запрос без значений параметров.
+ */
+@SpringBootTest
+@EnabledIf(PostgreSqlTestDatabase.AVAILABLE)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final User ADMIN = new User(1L, "admin", null, Role.ADMIN);
+
+    private static final List<String> RECORDED_SQL = new ArrayList<>();
+
+    private static PostgreSqlTestDatabase database;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskStatisticsRepository taskStatisticsRepository;
+
+    @Autowired
+    private TaskArchiveRepository taskArchiveRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void postgreSql(DynamicPropertyRegistry registry) {
+        database = PostgreSqlTestDatabase.create("tms_query_plan_test");
+        registry.add("spring.datasource.url", database::url);
+        registry.add("spring.datasource.username", database::username);
+        registry.add("spring.datasource.password", database::password);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("spring.flyway.schemas", () -> "t");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        // чтение по ID должно дойти до БД, а не до кэша второго уровня
+        registry.add("spring.jpa.properties.hibernate.cache.use_second_level_cache", () -> "false");
+    }
+
+    /**
+     * Запоминает SQL всех подготавливаемых запросов - и сгенерированных Hibernate, и выполняемых через JdbcTemplate.
+     */
+    @TestConfiguration
+    static class SqlRecordingConfig {
+
+        @Bean
+        static BeanPostProcessor sqlRecordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return recording(super.getConnection());
+                        }
+                    } : bean;
+                }
+            };
+        }
+
+        private static Connection recording(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("prepare") && args != null && args[0] instanceof String sql) {
+                            synchronized (RECORDED_SQL) {
+                                RECORDED_SQL.add(sql);
+                            }
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    });
+        }
+    }
+
+    @BeforeAll
+    void load() throws SQLException {
+        try (Connection connection = database.connect(); Statement statement = connection.createStatement()) {
+            // поисковые векторы и счётчики заполняются одним запросом после вставки, а не триггерами;
+            // ID задаются явно, чтобы исполнители и авторы задач существовали
+            statement.execute("SET session_replication_role = replica");
+            statement.execute("""
+                    INSERT INTO t.users (id, username, password, role)
+                    SELECT 100 + g, 'loaduser' || g, 'password', 'USER' FROM generate_series(1, 10000) g""");
+            statement.execute("""
+                    INSERT INTO t.tasks (id, title, description, status, priority, executor_id, author_id)
+                    SELECT g, 'task ' || g, 'description', 'WAITING', 'LOW', 101 + g % 10000, 101 + g % 100
+                    FROM generate_series(1, 200000) g""");
+            statement.execute("""
+                    INSERT INTO t.comments (id, task_id, content, author_id)
+                    SELECT g, 1 + g % 200000, 'comment', 101 + g % 10000 FROM generate_series(1, 400000) g""");
+            statement.execute("""
+                    UPDATE t.tasks SET status = 'COMPLETED', completed_at = now() - (id % 1000) * interval '1 hour'
+                    WHERE id % 5000 = 1""");
+            statement.execute("""
+                    INSERT INTO t.tasks_archive (id, title, description, status, priority, executor_id, author_id, version, completed_at)
+                    SELECT 10000000 + g, 'task ' || g, 'description', 'COMPLETED', 'LOW', 101 + g % 10000, 101 + g % 100, 0, now()
+                    FROM generate_series(1, 100000) g""");
+            statement.execute("""
+                    INSERT INTO t.comments_archive (id, task_id, content, author_id, version)
+                    SELECT 1000000 + g, 10000001 + g % 100000, 'comment', 101 + g % 10000, 0 FROM generate_series(1, 200000) g""");
+            statement.execute("""
+                    INSERT INTO t.task_comment_revisions (task_id, version)
+                    SELECT task_id, count(*) FROM t.comments GROUP BY task_id""");
+            statement.execute("UPDATE t.tasks SET search_vector = t.task_search_vector(title, description)");
+            statement.execute("""
+                    INSERT INTO t.task_counters (dimension, user_id, status, priority, count)
+                    SELECT 'E', executor_id, status, priority, count(*) FROM t.tasks GROUP BY executor_id, status, priority
+                    UNION ALL
+                    SELECT 'A', author_id, status, priority, count(*) FROM t.tasks GROUP BY author_id, status, priority
+                    UNION ALL
+                    SELECT 'T', 0, status, priority, count(*) FROM t.tasks GROUP BY status, priority""");
+            // журнал изменений счётчиков, накопленный между свёртками
+            statement.execute("""
+                    INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta)
+                    SELECT dimension, 101 + g % 10000, 'WAITING', 'LOW', 1
+                    FROM generate_series(1, 20000) g, unnest(ARRAY['E', 'A']) dimension
+                    UNION ALL
+                    SELECT 'T', 0, 'WAITING', 'LOW', 1 FROM generate_series(1, 200)""");
+            statement.execute("SET session_replication_role = DEFAULT");
+            statement.execute("ANALYZE");
+        }
+    }
+
+    Stream<Arguments> hotQueries() {
+        User executor = new User(142L, "loaduser42", null, Role.USER);
+        PageRequest byId = PageRequest.of(0, 10, Sort.by("id"));
+        TaskUpdateRequestDto complete = new TaskUpdateRequestDto();
+        complete.setStatus(Status.COMPLETED);
+        return Stream.of(
+                hotQuery("UserRepository.findByUsername",
+                        () -> userRepository.findByUsername("loaduser42")),
+                hotQuery("TaskRepository.findById",
+                        () -> taskRepository.findById(4242L)),
+                hotQuery("TaskRepository.findSlice: admin, keyset",
+                        () -> taskRepository.findSlice(TaskSpecificationUtils.isVisibleTo(ADMIN, null, null)
+                                .and(TaskSpecificationUtils.hasIdGreaterThan(150000L)), byId)),
+                hotQuery("TaskRepository.findSlice: executor, offset",
+                        () -> taskRepository.findSlice(TaskSpecificationUtils.isVisibleTo(executor, null, null),
+                                PageRequest.of(1, 10, Sort.by("id")))),
+                hotQuery("TaskRepository.findSlice: executor, keyset",
+                        () -> taskRepository.findSlice(TaskSpecificationUtils.isVisibleTo(executor, null, null)
+                                .and(TaskSpecificationUtils.hasIdGreaterThan(100000L)), byId)),
+                hotQuery("TaskRepository.findSlice: author, keyset",
+                        () -> taskRepository.findSlice(TaskSpecificationUtils.isVisibleTo(ADMIN, null, 142L)
+                                .and(TaskSpecificationUtils.hasIdGreaterThan(100000L)), byId)),
+                hotQuery("TaskRepository.updateStatusByExecutor",
+                        () -> taskRepository.updateStatusByExecutor(List.of(4242L, 4243L, 4244L), "COMPLETED", 142L)),
+                hotQuery("TaskRepository.update: executor, If-Match",
+                        () -> taskRepository.update(4242L, complete, 142L, List.of(0L))),
+                hotQuery("TaskRepository.search: executor",
+                        () -> taskRepository.search("task 4242", 142L, null, PageRequest.of(0, 10))),
+                hotQuery("TaskRepository.search: admin",
+                        () -> taskRepository.search("task 4242", null, null, PageRequest.of(0, 10))),
+                hotQuery("TaskRepository.search: author, comments",
+                        () -> taskRepository.search("comment", null, 142L, PageRequest.of(0, 10))),
+                hotQuery("TaskRepository.count: executor",
+                        () -> taskRepository.count(TaskSpecificationUtils.isVisibleTo(executor, null, null))),
+                hotQuery("CommentRepository.findRevisionByTaskId",
+                        () -> commentRepository.findRevisionByTaskId(4242L)),
+                hotQuery("TaskStatisticsRepository.countByExecutor",
+                        () -> taskStatisticsRepository.countByExecutor(142L)),
+                hotQuery("TaskStatisticsRepository.countByExecutor: admin, all",
+                        () -> taskStatisticsRepository.countByExecutor(null)),
+                hotQuery("CommentRepository.findAllByTaskId",
+                        () -> commentRepository.findAllByTaskId(4242L, byId)),
+                hotQuery("CommentRepository.findAllByTaskIdBefore",
+                        () -> commentRepository.findAllByTaskIdBefore(4242L, Long.MAX_VALUE, PageRequest.of(0, 5))),
+                hotQuery("CommentRepository.countByTaskId",
+                        () -> commentRepository.countByTaskId(4242L)),
+                hotQuery("TaskArchiveRepository.archive",
+                        () -> taskArchiveRepository.archive(Instant.now().minus(Duration.ofDays(30)), 500)),
+                hotQuery("TaskArchiveRepository.restore",
+                        () -> taskArchiveRepository.restore(List.of(10004242L), 4343L)),
+                hotQuery("TaskArchiveRepository.findById",
+                        () -> taskArchiveRepository.findById(10004242L)),
+                hotQuery("TaskArchiveRepository.findCommentsBefore",
+                        () -> taskArchiveRepository.findCommentsBefore(10004242L, Long.MAX_VALUE, PageRequest.of(0, 5))),
+                hotQuery("TaskArchiveRepository.findSlice: executor, keyset",
+                        () -> taskArchiveRepository.findSlice(142L, null, 100000L, byId)),
+                hotQuery("TaskArchiveRepository.findSlice: admin, keyset",
+                        () -> taskArchiveRepository.findSlice(null, null, 150000L, byId)),
+                hotQuery("TaskArchiveRepository.count: author",
+                        () -> taskArchiveRepository.count(null, 142L))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQuery_ShouldNotUseSeqScan(String name, Runnable action) throws SQLException {
+        List<String> statements = record(action);
+
+        assertFalse(statements.isEmpty(), () -> name + " не выполнил ни одного запроса");
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("Seq Scan"), () -> name + " использует последовательное сканирование:\n" + sql + "\n" + plan);
+        }
+    }
+
+    private static Arguments hotQuery(String name, Runnable action) {
+        return Arguments.of(name, action);
+    }
+
+    /**
+     * Выполняет метод в транзакции, которая затем откатывается, и возвращает отправленные им запросы.
+     */
+    private List<String> record(Runnable action) {
+        synchronized (RECORDED_SQL) {
+            RECORDED_SQL.clear();
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            action.run();
+            status.setRollbackOnly();
+        });
+        synchronized (RECORDED_SQL) {
+            return RECORDED_SQL.stream()
+                    .filter(sql -> sql.strip().toLowerCase(Locale.ROOT).matches("^(select|insert|update|delete|with)\\b[\\s\\S]*"))
+                    .toList();
+        }
+    }
+
+    /**
+     * Параметры JDBC заменяются нумерованными параметрами PostgreSQL, типы которых выводит сам планировщик.
+     */
+    private static String explain(String sql) throws SQLException {
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        // запрос с параметрами без значений выполняется только в простом протоколе
+        Properties properties = new Properties();
+        properties.setProperty("user", database.username());
+        properties.setProperty("password", database.password());
+        properties.setProperty("preferQueryMode", "simple");
+        try (Connection connection = DriverManager.getConnection(database.url(), properties);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN (GENERIC_PLAN) " + numbered)) {
+            StringBuilder plan = new StringBuilder();
+            while (resultSet.next()) {
+                plan.append(resultSet.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+}
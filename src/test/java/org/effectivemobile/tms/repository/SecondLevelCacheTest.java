@@ -0,0 +1,97 @@
+package org.effectivemobile.tms.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.config.CacheConfig;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сущности, вставленные в текущей транзакции, не попадают в кэш второго уровня,
+ * поэтому тесты работают без общей транзакции и удаляют свои данные сами.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CacheConfig.class, SimpleMeterRegistry.class, DatabaseSupport.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    private Task task;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(null, "cachedUser", "password", Role.USER));
+        Task newTask = new Task();
+        newTask.setTitle("Cached Task");
+        newTask.setStatus(Status.WAITING);
+        newTask.setPriority(Priority.LOW);
+        newTask.setAuthor(user);
+        newTask.setExecutor(user);
+        task = taskRepository.save(newTask);
+
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void findById_ShouldReadFromCache_WhenEntityWasLoadedBefore() {
+        userRepository.findById(user.getId()).orElseThrow();
+        taskRepository.findById(task.getId()).orElseThrow();
+
+        User cachedUser = userRepository.findById(user.getId()).orElseThrow();
+        Task cachedTask = taskRepository.findById(task.getId()).orElseThrow();
+
+        assertEquals(user.getUsername(), cachedUser.getUsername());
+        assertEquals(user.getId(), cachedTask.getExecutor().getId());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void save_ShouldReplaceCachedUser_WhenUserIsUpdated() {
+        User loadedUser = userRepository.findById(user.getId()).orElseThrow();
+        loadedUser.setRole(Role.ADMIN);
+        userRepository.save(loadedUser);
+
+        assertEquals(Role.ADMIN, userRepository.findById(user.getId()).orElseThrow().getRole());
+        assertTrue(entityManagerFactory.getCache().contains(User.class, user.getId()));
+    }
+}
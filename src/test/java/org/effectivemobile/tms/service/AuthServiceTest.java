@@ -1,21 +1,31 @@
 package org.effectivemobile.tms.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import javax.persistence.EntityExistsException;
 import org.effectivemobile.tms.dto.user.UserAuthRequestDto;
 import org.effectivemobile.tms.dto.user.UserResponseDto;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.jwt.AuthTokens;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -30,7 +40,7 @@ class AuthServiceTest {
     private UserService userService;
 
     @Mock
-    private JwtService jwtService;
+    private RefreshTokenService refreshTokenService;
 
     @Mock
     private AuthenticationManager authenticationManager;
@@ -38,6 +48,9 @@ class AuthServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Spy
+    private PasswordHashingService passwordHashingService = new PasswordHashingService(new SimpleMeterRegistry(), 1, 1, 1, 1);
+
     private User user;
 
     private UserResponseDto userResponseDto;
@@ -63,11 +76,12 @@ class AuthServiceTest {
         when(passwordEncoder.encode(requestDto.getPassword())).thenReturn(user.getPassword());
         when(userService.create(any(UserAuthRequestDto.class))).thenReturn(userResponseDto);
         when(userService.loadUserByUsername(requestDto.getUsername())).thenReturn(user);
-        when(jwtService.generateToken(user)).thenReturn("mockJwt");
+        when(refreshTokenService.issue(user)).thenReturn(new AuthTokens("mockJwt", "mockRefreshToken"));
 
-        String jwt = authService.signUp(requestDto);
+        AuthTokens tokens = authService.signUp(requestDto).join();
 
-        assertEquals("mockJwt", jwt);
+        assertEquals("mockJwt", tokens.accessToken());
+        assertEquals("mockRefreshToken", tokens.refreshToken());
     }
 
 
@@ -80,8 +94,9 @@ class AuthServiceTest {
         when(passwordEncoder.encode(requestDto.getPassword())).thenReturn(user.getPassword());
         when(userService.create(any(UserAuthRequestDto.class))).thenThrow(new EntityExistsException("Пользователь уже существует"));
 
-        assertThrows(EntityExistsException.class, () -> authService.signUp(requestDto));
-        verify(jwtService, never()).generateToken(any(User.class));
+        CompletionException exception = assertThrows(CompletionException.class, () -> authService.signUp(requestDto).join());
+        assertInstanceOf(EntityExistsException.class, exception.getCause());
+        verify(refreshTokenService, never()).issue(any(User.class));
     }
 
     @Test
@@ -93,11 +108,12 @@ class AuthServiceTest {
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(new UsernamePasswordAuthenticationToken(user, null));
         when(userService.loadUserByUsername(requestDto.getUsername())).thenReturn(user);
-        when(jwtService.generateToken(user)).thenReturn("mockJwt");
+        when(refreshTokenService.issue(user)).thenReturn(new AuthTokens("mockJwt", "mockRefreshToken"));
 
-        String jwt = authService.signIn(requestDto);
+        AuthTokens tokens = authService.signIn(requestDto).join();
 
-        assertEquals("mockJwt", jwt);
+        assertEquals("mockJwt", tokens.accessToken());
+        assertEquals("mockRefreshToken", tokens.refreshToken());
     }
 
     @Test
@@ -109,7 +125,47 @@ class AuthServiceTest {
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenThrow(new BadCredentialsException("Неверный логин или пароль"));
 
-        assertThrows(BadCredentialsException.class, () -> authService.signIn(requestDto));
+        CompletionException exception = assertThrows(CompletionException.class, () -> authService.signIn(requestDto).join());
+        assertInstanceOf(BadCredentialsException.class, exception.getCause());
+    }
+
+    @Test
+    void refresh_ShouldNotUsePasswordHashingPool() {
+        when(refreshTokenService.refresh("refreshToken")).thenReturn(new AuthTokens("newJwt", "newRefreshToken"));
+
+        AuthTokens tokens = authService.refresh("refreshToken");
+
+        assertEquals("newJwt", tokens.accessToken());
+        verify(passwordHashingService, never()).submit(any());
+        verifyNoInteractions(authenticationManager, passwordEncoder);
+    }
+
+    @Test
+    void signIn_ShouldRejectImmediately_WhenHashingPoolIsSaturated() throws Exception {
+        UserAuthRequestDto requestDto = new UserAuthRequestDto();
+        requestDto.setUsername("testUser");
+        requestDto.setPassword("password");
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> running = passwordHashingService.submit(() -> await(release));
+        CompletableFuture<Object> queued = passwordHashingService.submit(() -> null);
+        try {
+            assertThrows(RejectedExecutionException.class, () -> authService.signIn(requestDto));
+            verifyNoInteractions(authenticationManager);
+        } finally {
+            release.countDown();
+        }
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    private static Object await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
     }
 
 }
@@ -3,11 +3,15 @@ package org.effectivemobile.tms.service;
 import javax.persistence.EntityNotFoundException;
 import org.effectivemobile.tms.dto.comment.CommentRequestDto;
 import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.comment.CommentVersionDto;
 import org.effectivemobile.tms.entity.Comment;
 import org.effectivemobile.tms.entity.Task;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.ConflictException;
 import org.effectivemobile.tms.mapper.CommentMapper;
 import org.effectivemobile.tms.repository.CommentRepository;
+import org.effectivemobile.tms.repository.DatabaseSupport;
+import org.effectivemobile.tms.repository.TaskArchiveRepository;
 import org.effectivemobile.tms.repository.TaskRepository;
 import org.effectivemobile.tms.util.enums.Role;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,15 +20,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.pagination.CursorUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -46,6 +56,12 @@ class CommentServiceTest {
     @Mock
     private CommentMapper commentMapper;
 
+    @Mock
+    private DatabaseSupport databaseSupport;
+
+    @Mock
+    private TaskArchiveRepository taskArchiveRepository;
+
     private User admin;
     private User user;
     private Task task;
@@ -78,7 +94,7 @@ class CommentServiceTest {
         when(userService.getCurrentUser()).thenReturn(admin);
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
         when(commentRepository.save(any(Comment.class))).thenReturn(comment);
-        when(commentMapper.entityToResponseDto(any(Comment.class))).thenReturn(new CommentResponseDto(1L, task.getId(), "Comment from admin", admin.getId()));
+        when(commentMapper.entityToResponseDto(any(Comment.class))).thenReturn(new CommentResponseDto(1L, task.getId(), "Comment from admin", admin.getId(), 0L));
 
         CommentResponseDto result = commentService.create(task.getId(), dto);
 
@@ -96,7 +112,7 @@ class CommentServiceTest {
         when(userService.getCurrentUser()).thenReturn(user);
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
         when(commentRepository.save(any(Comment.class))).thenReturn(comment);
-        when(commentMapper.entityToResponseDto(any(Comment.class))).thenReturn(new CommentResponseDto(2L, task.getId(), "Comment from executor", user.getId()));
+        when(commentMapper.entityToResponseDto(any(Comment.class))).thenReturn(new CommentResponseDto(2L, task.getId(), "Comment from executor", user.getId(), 0L));
 
         CommentResponseDto result = commentService.create(task.getId(), dto);
 
@@ -104,6 +120,23 @@ class CommentServiceTest {
         verify(commentRepository).save(any());
     }
 
+    @Test
+    void update_ShouldThrowException_WhenIfMatchIsStaleVersion() {
+        Comment comment = new Comment();
+        comment.setId(1L);
+        comment.setTask(task);
+        comment.setAuthor(user);
+        comment.setVersion(2L);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(commentRepository.findById(comment.getId())).thenReturn(Optional.of(comment));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> commentService.update(task.getId(), comment.getId(),
+                new CommentRequestDto("Updated comment"), ETagUtils.of(comment.getId(), 1L)));
+        verify(commentRepository, never()).saveAndFlush(any());
+    }
+
     @Test
     void create_ShouldThrowAccessDeniedException_WhenUserCreatesCommentForTaskTheyAreNotExecuting() {
         // Настройка задачи с другим исполнителем
@@ -123,6 +156,30 @@ class CommentServiceTest {
         assertEquals("Вы не являетесь исполнителем задачи или администратором", exception.getMessage());
     }
 
+    @Test
+    void create_ShouldThrowEntityNotFoundException_WhenTaskIsBeingDeleted() {
+        task.setDeletingAt(Instant.now());
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(EntityNotFoundException.class, () -> commentService.create(task.getId(), new CommentRequestDto("Task Comment")));
+        verify(commentRepository, never()).save(any(Comment.class));
+    }
+
+    @Test
+    void create_ShouldThrowConflictException_WhenTaskIsArchived() {
+        task.setArchived(true);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(ConflictException.class, () -> commentService.create(task.getId(), new CommentRequestDto("Task Comment")));
+        verify(commentRepository, never()).save(any(Comment.class));
+    }
+
     @Test
     void create_ShouldThrowEntityNotFoundException_WhenAdminCreatesCommentForNonexistentTask() {
         CommentRequestDto dto = new CommentRequestDto("Task Comment");
@@ -142,44 +199,50 @@ class CommentServiceTest {
 
     @Test
     void getAll_ShouldSucceed_WhenAdminGetsCommentsForAnyTask() {
-        Comment comment = new Comment();
-        comment.setId(1L);
-        comment.setContent("Comment from admin");
-        comment.setTask(task);
-        comment.setAuthor(admin);
+        CommentResponseDto comment = new CommentResponseDto(1L, task.getId(), "Comment from admin", admin.getId(), 0L);
 
         when(userService.getCurrentUser()).thenReturn(admin);
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
-        Page<Comment> commentsPage = new PageImpl<>(List.of(comment));
-        when(commentRepository.findAllByTaskId(task.getId(), PageRequest.of(0, 10))).thenReturn(commentsPage);
-        when(commentMapper.entityToResponseDto(comment)).thenReturn(new CommentResponseDto(1L, task.getId(), "Comment from admin", admin.getId()));
+        Slice<CommentResponseDto> commentsSlice = new SliceImpl<>(List.of(comment));
+        when(commentRepository.findAllByTaskId(task.getId(), PageRequest.of(0, 10, Sort.by("id")))).thenReturn(commentsSlice);
 
         List<CommentResponseDto> result = commentService.getAll(task.getId(), 0, 10);
 
         assertEquals(1, result.size());
         assertEquals("Comment from admin", result.get(0).getContent());
-        verify(commentRepository).findAllByTaskId(task.getId(), PageRequest.of(0, 10));
+        verify(commentRepository).findAllByTaskId(task.getId(), PageRequest.of(0, 10, Sort.by("id")));
     }
 
     @Test
     void getAll_ShouldSucceed_WhenUserGetsCommentsForTaskTheyAreExecuting() {
-        Comment comment = new Comment();
-        comment.setId(1L);
-        comment.setContent("Comment from executor");
-        comment.setTask(task);
-        comment.setAuthor(user);
+        CommentResponseDto comment = new CommentResponseDto(1L, task.getId(), "Comment from executor", user.getId(), 0L);
 
         when(userService.getCurrentUser()).thenReturn(user);
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
-        Page<Comment> commentsPage = new PageImpl<>(List.of(comment));
-        when(commentRepository.findAllByTaskId(task.getId(), PageRequest.of(0, 10))).thenReturn(commentsPage);
-        when(commentMapper.entityToResponseDto(comment)).thenReturn(new CommentResponseDto(1L, task.getId(), "Comment from executor", user.getId()));
+        Slice<CommentResponseDto> commentsSlice = new SliceImpl<>(List.of(comment));
+        when(commentRepository.findAllByTaskId(task.getId(), PageRequest.of(0, 10, Sort.by("id")))).thenReturn(commentsSlice);
 
         List<CommentResponseDto> result = commentService.getAll(task.getId(), 0, 10);
 
         assertEquals(1, result.size());
         assertEquals("Comment from executor", result.get(0).getContent());
-        verify(commentRepository).findAllByTaskId(task.getId(), PageRequest.of(0, 10));
+        verify(commentRepository).findAllByTaskId(task.getId(), PageRequest.of(0, 10, Sort.by("id")));
+    }
+
+    @Test
+    void getAll_ShouldReadArchive_WhenTaskIsArchived() {
+        task.setArchived(true);
+        CommentResponseDto comment = new CommentResponseDto(1L, task.getId(), "Archived comment", user.getId(), 0L);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskArchiveRepository.findComments(task.getId(), PageRequest.of(0, 10, Sort.by("id"))))
+                .thenReturn(new SliceImpl<>(List.of(comment)));
+
+        assertEquals(List.of(comment), commentService.getAll(task.getId(), 0, 10));
+        verifyNoInteractions(commentRepository);
     }
 
     @Test
@@ -198,6 +261,19 @@ class CommentServiceTest {
         assertEquals("Вы не являетесь исполнителем задачи или администратором", exception.getMessage());
     }
 
+    @Test
+    void getAllBefore_ShouldReadCommentsOlderThanCursor() {
+        CommentResponseDto comment = new CommentResponseDto(4L, task.getId(), "Older comment", user.getId(), 0L);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(commentRepository.findAllByTaskIdBefore(task.getId(), 5L, PageRequest.of(0, 10))).thenReturn(new SliceImpl<>(List.of(comment)));
+
+        Slice<CommentResponseDto> result = commentService.getAllBefore(task.getId(), CursorUtils.encode(5L), 10);
+
+        assertEquals(List.of(comment), result.getContent());
+    }
+
     @Test
     void getAll_ShouldThrowEntityNotFoundException_WhenAdminGetsCommentsForNonexistentTask() {
         when(userService.getCurrentUser()).thenReturn(admin);
@@ -209,4 +285,33 @@ class CommentServiceTest {
 
         assertEquals("Задача не найдена", exception.getMessage());
     }
+
+    @Test
+    void getETag_ShouldChange_WhenCommentsOfTaskChange() {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(commentRepository.findVersionByTaskId(task.getId()))
+                .thenReturn(new CommentVersionDto(2L, 5L, 0L))
+                .thenReturn(new CommentVersionDto(2L, 5L, 1L));
+
+        String eTag = commentService.getETag(task.getId(), 0, 10);
+
+        assertEquals("\"1-2-5-0-0-10\"", eTag);
+        assertNotEquals(eTag, commentService.getETag(task.getId(), 0, 10));
+        verify(commentRepository, never()).findAllByTaskId(anyLong(), any());
+    }
+
+    @Test
+    void getETag_ShouldUseCommentsRevisionOfTask_WhenDatabaseIsPostgreSql() {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(databaseSupport.isPostgreSql()).thenReturn(true);
+        when(commentRepository.findRevisionByTaskId(task.getId())).thenReturn(7L, 8L);
+
+        String eTag = commentService.getETag(task.getId(), 0, 10);
+
+        assertEquals("\"1-7-0-10\"", eTag);
+        assertNotEquals(eTag, commentService.getETag(task.getId(), 0, 10));
+        verify(commentRepository, never()).findVersionByTaskId(anyLong());
+    }
 }
@@ -0,0 +1,97 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.jwt.JwtClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private JwtService jwtService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtService = new JwtService(meterRegistry, false, true, 100);
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("testUser");
+        user.setRole(Role.USER);
+    }
+
+    @Test
+    void verify_ShouldReturnClaims_WhenTokenIsValid() {
+        String token = jwtService.generateToken(user);
+
+        Optional<JwtClaims> claims = jwtService.verify(token);
+
+        assertTrue(claims.isPresent());
+        assertEquals(user.getUsername(), claims.get().subject());
+        assertFalse(claims.get().isSelfContained());
+    }
+
+    @Test
+    void verify_ShouldReturnUserIdAndRole_WhenTokenIsSelfContained() {
+        JwtService selfContainedJwtService = new JwtService(meterRegistry, true, true, 100);
+        String token = selfContainedJwtService.generateToken(user);
+
+        JwtClaims claims = selfContainedJwtService.verify(token).orElseThrow();
+
+        assertTrue(claims.isSelfContained());
+        assertEquals(user.getId(), claims.userId());
+        assertEquals(user.getRole(), claims.role());
+    }
+
+    @Test
+    void verify_ShouldReturnEmpty_WhenSignatureIsInvalid() {
+        String token = jwtService.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertTrue(jwtService.verify(tampered).isEmpty());
+        assertTrue(jwtService.verify("not-a-jwt").isEmpty());
+    }
+
+    @Test
+    void verify_ShouldReturnEmpty_WhenSignedTokenHasNoSubject() {
+        user.setUsername(null);
+        String withoutSubject = jwtService.generateToken(user);
+        user.setUsername("");
+        String emptySubject = jwtService.generateToken(user);
+
+        assertTrue(jwtService.verify(withoutSubject).isEmpty());
+        assertTrue(jwtService.verify(emptySubject).isEmpty());
+    }
+
+    @Test
+    void verify_ShouldParseTokenOnce_WhenTokenIsRepeated() {
+        String token = jwtService.generateToken(user);
+
+        jwtService.verify(token);
+        jwtService.verify(token);
+        jwtService.verify(token);
+
+        assertEquals(1, meterRegistry.get("jwt.verify").timer().count());
+    }
+
+    @Test
+    void verify_ShouldParseEveryTime_WhenCacheIsDisabled() {
+        JwtService uncachedJwtService = new JwtService(meterRegistry, false, false, 0);
+        String token = uncachedJwtService.generateToken(user);
+
+        uncachedJwtService.verify(token);
+        uncachedJwtService.verify(token);
+
+        assertEquals(2, meterRegistry.get("jwt.verify").timer().count());
+    }
+}
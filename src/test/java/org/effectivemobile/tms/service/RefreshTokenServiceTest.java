@@ -0,0 +1,140 @@
+package org.effectivemobile.tms.service;
+
+import org.effectivemobile.tms.entity.RefreshToken;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.InvalidRefreshTokenException;
+import org.effectivemobile.tms.repository.RefreshTokenRepository;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.jwt.AuthTokens;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private JwtService jwtService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, jwtService, Duration.ofDays(30));
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("testUser");
+        user.setRole(Role.USER);
+    }
+
+    @Test
+    void issue_ShouldStoreHashInsteadOfToken() {
+        when(jwtService.generateToken(user)).thenReturn("mockJwt");
+
+        AuthTokens tokens = refreshTokenService.issue(user);
+
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        RefreshToken saved = captor.getValue();
+        assertEquals("mockJwt", tokens.accessToken());
+        assertNotEquals(tokens.refreshToken(), saved.getTokenHash());
+        assertEquals(64, saved.getTokenHash().length());
+        assertSame(user, saved.getUser());
+        assertTrue(saved.getExpiresAt().isAfter(Instant.now().plus(Duration.ofDays(29))));
+        assertEquals(Role.USER, saved.getRole());
+    }
+
+    @Test
+    void refresh_ShouldRotateToken_WhenTokenIsValid() {
+        when(jwtService.generateToken(user)).thenReturn("mockJwt", "newJwt");
+        AuthTokens issued = refreshTokenService.issue(user);
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        RefreshToken stored = captor.getValue();
+        String issuedHash = stored.getTokenHash();
+        Instant expiresAt = stored.getExpiresAt();
+        when(refreshTokenRepository.findByTokenHash(issuedHash)).thenReturn(Optional.of(stored));
+
+        AuthTokens refreshed = refreshTokenService.refresh(issued.refreshToken());
+
+        assertEquals("newJwt", refreshed.accessToken());
+        assertNotEquals(issued.refreshToken(), refreshed.refreshToken());
+        assertNotEquals(issuedHash, stored.getTokenHash());
+        assertEquals(issuedHash, stored.getPreviousTokenHash());
+        assertEquals(expiresAt, stored.getExpiresAt());
+    }
+
+    @Test
+    void refresh_ShouldRevokeSession_WhenRotatedTokenIsReused() {
+        RefreshToken session = new RefreshToken(1L, "newHash", user, Instant.now().plusSeconds(60), "oldHash", Role.USER);
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+        when(refreshTokenRepository.findByPreviousTokenHash(anyString())).thenReturn(Optional.of(session));
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refreshToken"));
+        verify(refreshTokenRepository).delete(session);
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void refresh_ShouldRevokeSession_WhenRoleHasChanged() {
+        RefreshToken session = new RefreshToken(1L, "hash", user, Instant.now().plusSeconds(60), null, Role.ADMIN);
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(session));
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refreshToken"));
+        verify(refreshTokenRepository).delete(session);
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void refresh_ShouldCommitRevocation_WhenTokenIsRejected() throws NoSuchMethodException {
+        Transactional transactional = RefreshTokenService.class.getMethod("refresh", String.class).getAnnotation(Transactional.class);
+
+        assertArrayEquals(new Class<?>[] {InvalidRefreshTokenException.class}, transactional.noRollbackFor());
+    }
+
+    @Test
+    void refresh_ShouldThrowException_WhenTokenIsExpired() {
+        RefreshToken expired = new RefreshToken(1L, "hash", user, Instant.now().minusSeconds(1), null, Role.USER);
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(expired));
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refreshToken"));
+        assertEquals("hash", expired.getTokenHash());
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void refresh_ShouldThrowException_WhenTokenIsUnknown() {
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+        when(refreshTokenRepository.findByPreviousTokenHash(anyString())).thenReturn(Optional.empty());
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("refreshToken"));
+        verify(refreshTokenRepository, never()).delete(any());
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void revokeAll_ShouldDeleteAllSessionsOfUser() {
+        refreshTokenService.revokeAll(user);
+
+        verify(refreshTokenRepository).deleteByUserId(1L);
+    }
+}
@@ -0,0 +1,140 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.repository.TaskArchiveRepository;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskArchiveServiceTest {
+
+    private TaskArchiveService taskArchiveService;
+
+    @Mock
+    private TaskArchiveRepository taskArchiveRepository;
+
+    @Mock
+    private TaskSuggestService taskSuggestService;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+        taskArchiveService = new TaskArchiveService(taskArchiveRepository, taskSuggestService, entityManagerFactory,
+                transactionManager, meterRegistry, Duration.ofDays(30), 2);
+    }
+
+    @Test
+    void archive_ShouldMoveTasksInChunks_UntilChunkIsNotFull() {
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.archive(any(Instant.class), eq(2))).thenReturn(
+                List.of(new TaskTitle(1L, "Отчёт", 2L, 1L, 4L), new TaskTitle(2L, "План", 2L, 1L, 7L)),
+                List.of(new TaskTitle(3L, "Счёт", 2L, 1L, 0L)));
+
+        Instant before = Instant.now().minus(Duration.ofDays(30));
+        taskArchiveService.archive();
+
+        verify(taskArchiveRepository, times(2)).archive(argThat(cutoff -> !cutoff.isBefore(before)), eq(2));
+        verify(cache).evict(Task.class, 1L);
+        verify(cache).evict(Task.class, 3L);
+        verify(taskSuggestService).remove(2L, 7L);
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(3, meterRegistry.get("tasks.archived").counter().count());
+    }
+
+    @Test
+    void archive_ShouldDoNothing_WhenArchiveIsNotSupported() {
+        when(taskArchiveRepository.isSupported()).thenReturn(false);
+
+        taskArchiveService.archive();
+
+        verify(taskArchiveRepository, never()).archive(any(), anyInt());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void restore_ShouldReturnTasksToSuggestIndex_WhenTasksAreArchived() {
+        List<TaskTitle> restored = List.of(new TaskTitle(5L, "Отчёт", 2L, 1L, 3L));
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.restore(List.of(5L, 6L), 2L)).thenReturn(restored);
+
+        List<Long> result = taskArchiveService.restore(List.of(5L, 6L), 2L);
+
+        assertEquals(List.of(5L), result);
+        verify(cache).evict(Task.class, 5L);
+        verify(taskSuggestService).restoreAll(restored);
+        assertEquals(1, meterRegistry.get("tasks.restored").counter().count());
+    }
+
+    @Test
+    void restore_ShouldCountRestoredTasks_OnlyAfterCommit() {
+        List<TaskTitle> restored = List.of(new TaskTitle(5L, "Отчёт", 2L, 1L, 3L));
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.restore(List.of(5L), null)).thenReturn(restored);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            taskArchiveService.restore(List.of(5L), null);
+            assertEquals(0, meterRegistry.get("tasks.restored").counter().count());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(1, meterRegistry.get("tasks.restored").counter().count());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void restore_ShouldNotCountRestoredTasks_WhenTransactionIsRolledBack() {
+        List<TaskTitle> restored = List.of(new TaskTitle(5L, "Отчёт", 2L, 1L, 3L));
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.restore(List.of(5L), null)).thenReturn(restored);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            taskArchiveService.restore(List.of(5L), null);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertEquals(0, meterRegistry.get("tasks.restored").counter().count());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void restore_ShouldReturnEmptyList_WhenArchiveIsNotSupported() {
+        when(taskArchiveRepository.isSupported()).thenReturn(false);
+
+        assertTrue(taskArchiveService.restore(List.of(5L), null).isEmpty());
+        verify(taskArchiveRepository, never()).restore(any(), any());
+    }
+}
@@ -0,0 +1,152 @@
+package org.effectivemobile.tms.service;
+
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateStatusRequestDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.repository.UserRepository;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Нагружает одну задачу изменениями из нескольких потоков и проверяет, что версия
+ * растёт с каждым записанным изменением, а последнее записанное изменение не теряется.
+ */
+@SpringBootTest
+class TaskConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 20;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User admin;
+
+    private Task task;
+
+    @BeforeEach
+    void setUp() {
+        admin = userRepository.save(new User(null, "concurrentAdmin", "password", Role.ADMIN));
+        Task newTask = new Task();
+        newTask.setTitle("Concurrent Task");
+        newTask.setDescription("");
+        newTask.setStatus(Status.WAITING);
+        newTask.setPriority(Priority.LOW);
+        newTask.setAuthor(admin);
+        newTask.setExecutor(admin);
+        task = taskRepository.save(newTask);
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void update_ShouldNotLoseUpdates_WhenClientsRetryOnPreconditionFailure() throws Exception {
+        runConcurrently(() -> {
+            for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                while (true) {
+                    TaskResponseDto current = taskService.getById(task.getId());
+                    TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
+                    dto.setDescription(current.getDescription() + "x");
+                    try {
+                        taskService.update(task.getId(), dto, ETagUtils.of(current.getId(), current.getVersion()));
+                        break;
+                    } catch (OptimisticLockingFailureException ex) {
+                        // задачу успели изменить, клиент перечитывает её и повторяет изменение
+                    }
+                }
+            }
+            return null;
+        });
+
+        Task updated = taskRepository.findById(task.getId()).orElseThrow();
+        assertEquals(THREADS * UPDATES_PER_THREAD, updated.getDescription().length());
+        assertEquals(THREADS * UPDATES_PER_THREAD, updated.getVersion());
+    }
+
+    @Test
+    void updateStatus_ShouldNotLoseUpdates_WhenCalledWithoutIfMatch() throws Exception {
+        Status[] statuses = Status.values();
+
+        List<List<TaskResponseDto>> responses = runConcurrently(() -> {
+            List<TaskResponseDto> applied = new ArrayList<>();
+            for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                TaskUpdateStatusRequestDto dto = new TaskUpdateStatusRequestDto();
+                dto.setStatus(statuses[i % statuses.length]);
+                applied.add(taskService.updateStatus(task.getId(), dto, null));
+            }
+            return applied;
+        });
+
+        // каждое изменение получило собственную версию, а последнее из них сохранилось в БД
+        Map<Long, TaskResponseDto> byVersion = responses.stream().flatMap(List::stream)
+                .collect(Collectors.toMap(TaskResponseDto::getVersion, Function.identity()));
+        assertEquals(THREADS * UPDATES_PER_THREAD, byVersion.size());
+        Task updated = taskRepository.findById(task.getId()).orElseThrow();
+        assertEquals(THREADS * UPDATES_PER_THREAD, updated.getVersion());
+        assertEquals(byVersion.get(updated.getVersion()).getStatus(), updated.getStatus());
+    }
+
+    private <T> List<T> runConcurrently(Callable<T> action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+                    try {
+                        start.await();
+                        return action.call();
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.effectivemobile.tms.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskExportServiceTest {
+
+    @InjectMocks
+    private TaskExportService taskExportService;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private UserService userService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(2L);
+        user.setUsername("user");
+        user.setRole(Role.USER);
+    }
+
+    @Test
+    void export_ShouldWriteTasksWithTheirComments_WhenFormatIsNdjson() throws IOException {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.streamAll(any(Specification.class))).thenReturn(Stream.of(
+                new TaskResponseDto(1L, "First", null, Status.WAITING, Priority.LOW, 1L, 2L, 0L),
+                new TaskResponseDto(2L, "Second", null, Status.COMPLETED, Priority.HIGH, 1L, 2L, 0L)));
+        when(taskRepository.streamComments(any(Specification.class))).thenReturn(Stream.of(
+                new CommentResponseDto(10L, 2L, "Comment", 1L, 0L)));
+
+        String result = write(ExportFormat.NDJSON, true);
+
+        String[] lines = result.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(0, objectMapper.readTree(lines[0]).get("comments").size());
+        assertEquals(10L, objectMapper.readTree(lines[1]).get("comments").get(0).get("id").asLong());
+        verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+    }
+
+    @Test
+    void export_ShouldEscapeValues_WhenFormatIsCsv() throws IOException {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.streamAll(any(Specification.class))).thenReturn(Stream.of(
+                new TaskResponseDto(1L, "Title, with \"quotes\"", null, Status.WAITING, Priority.LOW, 1L, 2L, 0L)));
+
+        String result = write(ExportFormat.CSV, false);
+
+        assertEquals("id,title,description,status,priority,author_id,executor_id\n" +
+                "1,\"Title, with \"\"quotes\"\"\",,WAITING,LOW,1,2\n", result);
+        verify(taskRepository, never()).streamComments(any());
+    }
+
+    private String write(ExportFormat format, boolean withComments) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        taskExportService.export(format, withComments, null, null).writeTo(outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
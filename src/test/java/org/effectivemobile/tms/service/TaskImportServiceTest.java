@@ -0,0 +1,156 @@
+package org.effectivemobile.tms.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.effectivemobile.tms.dto.task.TaskImportResultDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.repository.TaskCopyRepository;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.repository.UserRepository;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskImportServiceTest {
+
+    @InjectMocks
+    private TaskImportService taskImportService;
+
+    @Mock
+    private TaskCopyRepository taskCopyRepository;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private TaskSuggestService taskSuggestService;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private User admin;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        admin = new User();
+        admin.setId(1L);
+        admin.setUsername("admin");
+        admin.setRole(Role.ADMIN);
+
+        user = new User();
+        user.setId(2L);
+        user.setUsername("user");
+        user.setRole(Role.USER);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importTasks_ShouldInsertTasksAndRejectMissingExecutors_WhenCopyIsNotSupported() {
+        InputStream csv = stream("""
+                id,title,description,status,priority,author_id,executor_id
+                7,"Title, with comma","Multi
+                line",IN_PROGRESS,LOW,1,2
+                8,Second,,,HIGH,1,99
+                """);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskCopyRepository.isSupported()).thenReturn(false);
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(user));
+
+        TaskImportResultDto result = taskImportService.importTasks(ExportFormat.CSV, csv);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(List.of(2L), result.getRejectedLines());
+        ArgumentCaptor<List<Task>> tasks = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(taskRepository, entityManager);
+        inOrder.verify(taskRepository, times(1)).saveAll(tasks.capture());
+        inOrder.verify(entityManager).flush();
+        inOrder.verify(entityManager).clear();
+        Task task = tasks.getValue().get(0);
+        assertEquals("Title, with comma", task.getTitle());
+        assertEquals("Multi\nline", task.getDescription());
+        assertEquals(Status.IN_PROGRESS, task.getStatus());
+        assertEquals(Priority.LOW, task.getPriority());
+        assertEquals(admin, task.getAuthor());
+        assertNull(task.getId());
+        verify(taskSuggestService).putAll(argThat(titles -> titles.size() == 1));
+    }
+
+    @Test
+    void importTasks_ShouldUseCopy_WhenCopyIsSupported() {
+        TaskImportResultDto expected = new TaskImportResultDto(1L, 0L, List.of());
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskCopyRepository.isSupported()).thenReturn(true);
+        when(taskCopyRepository.copy(any(), eq(admin.getId()), any(), any())).thenReturn(expected);
+
+        TaskImportResultDto result = taskImportService.importTasks(ExportFormat.NDJSON,
+                stream("{\"title\":\"Task\",\"priority\":\"LOW\",\"executorId\":2}\n"));
+
+        assertSame(expected, result);
+        verify(taskRepository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void importTasks_ShouldThrowException_WhenRecordIsInvalid() {
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskCopyRepository.isSupported()).thenReturn(false);
+
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> taskImportService.importTasks(ExportFormat.NDJSON,
+                stream("{\"title\":\"Task\",\"priority\":\"LOW\",\"executorId\":2}\n{\"title\":\"\",\"priority\":\"LOW\",\"executorId\":2}\n")));
+
+        assertEquals("Строка 2: Название не может быть пустым", exception.getMessage());
+        verify(taskRepository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void importTasks_ShouldThrowException_WhenUserImportsTasks() {
+        when(userService.getCurrentUser()).thenReturn(user);
+
+        assertThrows(AccessDeniedException.class, () -> taskImportService.importTasks(ExportFormat.CSV, stream("")));
+        verify(taskCopyRepository, never()).isSupported();
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
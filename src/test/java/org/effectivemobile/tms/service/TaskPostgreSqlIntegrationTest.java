@@ -0,0 +1,393 @@
+package org.effectivemobile.tms.service;
+
+import org.effectivemobile.tms.PostgreSqlTestDatabase;
+import org.effectivemobile.tms.dto.comment.CommentRequestDto;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
+import org.effectivemobile.tms.dto.task.TaskBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskImportResultDto;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskStatisticsDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskUpdateStatusRequestDto;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.ConflictException;
+import org.effectivemobile.tms.repository.TaskStatisticsRepository;
+import org.effectivemobile.tms.repository.UserRepository;
+import org.effectivemobile.tms.util.enums.ExportFormat;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import javax.persistence.EntityNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет на PostgreSQL со схемой из миграций Flyway то, что в H2 не воспроизводится:
+ * триггерные счётчики задач, перенос задач в архив и обратно и полнотекстовый поиск.
+ */
+@SpringBootTest
+@EnabledIf(PostgreSqlTestDatabase.AVAILABLE)
+class TaskPostgreSqlIntegrationTest {
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskImportService taskImportService;
+
+    @Autowired
+    private TaskArchiveService taskArchiveService;
+
+    @Autowired
+    private TaskStatisticsService taskStatisticsService;
+
+    @Autowired
+    private TaskStatisticsRepository taskStatisticsRepository;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private TaskPurgeService taskPurgeService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User admin;
+
+    private User executor;
+
+    @DynamicPropertySource
+    static void postgreSql(DynamicPropertyRegistry registry) {
+        PostgreSqlTestDatabase database = PostgreSqlTestDatabase.create("tms_task_integration_test");
+        registry.add("spring.datasource.url", database::url);
+        registry.add("spring.datasource.username", database::username);
+        registry.add("spring.datasource.password", database::password);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("spring.flyway.schemas", () -> "t");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+    }
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        admin = userRepository.save(new User(null, "admin-" + suffix, "password", Role.ADMIN));
+        executor = userRepository.save(new User(null, "executor-" + suffix, "password", Role.USER));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statistics_ShouldMatchTasks_AfterEveryKindOfChange() {
+        TaskResponseDto first = taskService.create(task("Первая"));
+        taskService.create(task("Вторая"));
+        assertCountersMatchTasks(2);
+
+        taskService.createBatch(new TaskBatchCreateRequestDto(List.of(task("Третья"), task("Четвёртая"), task("Пятая"))));
+        assertCountersMatchTasks(5);
+
+        TaskImportResultDto imported = taskImportService.importTasks(ExportFormat.CSV, csv("""
+                id,title,description,status,priority,author_id,executor_id
+                ,Шестая,,IN_PROGRESS,LOW,,%1$d
+                ,Седьмая,,COMPLETED,HIGH,,%1$d
+                """.formatted(executor.getId())));
+        assertEquals(2, imported.getImported());
+        assertCountersMatchTasks(7);
+
+        assertTrue(taskService.delete(first.getId()));
+        assertCountersMatchTasks(6);
+
+        // архивные задачи учитываются в статистике наравне с основными
+        jdbcTemplate.update("UPDATE t.tasks SET completed_at = now() - interval '60 days' WHERE executor_id = ? AND status = 'COMPLETED'",
+                executor.getId());
+        taskArchiveService.archive();
+        assertEquals(1, count("SELECT count(*) FROM t.tasks_archive WHERE executor_id = ?"));
+        assertCountersMatchTasks(6);
+
+        TaskStatisticsDto statistics = taskStatisticsService.get(executor.getId(), null);
+        assertEquals(1, statistics.getByStatus().get(Status.COMPLETED));
+        assertEquals(1, statistics.getByStatusAndPriority().get(Status.COMPLETED).get(Priority.HIGH));
+    }
+
+    @Test
+    void archive_ShouldMoveTaskWithComments_AndRestoreItOnReopen() {
+        TaskResponseDto task = taskService.create(task("Архивная"));
+        CommentResponseDto firstComment = commentService.create(task.getId(), new CommentRequestDto("Первый комментарий"));
+        CommentResponseDto secondComment = commentService.create(task.getId(), new CommentRequestDto("Второй комментарий"));
+        TaskResponseDto completed = taskService.updateStatus(task.getId(), new TaskUpdateStatusRequestDto(Status.COMPLETED), null);
+        jdbcTemplate.update("UPDATE t.tasks SET completed_at = now() - interval '60 days' WHERE id = ?", task.getId());
+
+        taskArchiveService.archive();
+
+        assertEquals(0, count("SELECT count(*) FROM t.tasks WHERE executor_id = ?"));
+        assertEquals(1, count("SELECT count(*) FROM t.tasks_archive WHERE executor_id = ?"));
+        assertEquals(2, count("SELECT count(*) FROM t.comments_archive WHERE task_id = ?", task.getId()));
+        assertEquals(0, count("SELECT count(*) FROM t.comments WHERE task_id = ?", task.getId()));
+
+        taskService.updateStatuses(new TaskBulkStatusUpdateRequestDto(List.of(task.getId()), Status.IN_PROGRESS));
+
+        TaskResponseDto restored = taskService.getById(task.getId());
+        assertEquals(Status.IN_PROGRESS, restored.getStatus());
+        assertEquals(completed.getVersion() + 1, restored.getVersion());
+        assertEquals(0, count("SELECT count(*) FROM t.tasks_archive WHERE executor_id = ?"));
+        assertEquals(0, count("SELECT count(*) FROM t.comments_archive WHERE task_id = ?", task.getId()));
+        assertEquals(List.of(firstComment.getId(), secondComment.getId()),
+                jdbcTemplate.queryForList("SELECT id FROM t.comments WHERE task_id = ? ORDER BY id", Long.class, task.getId()));
+        assertCountersMatchTasks(1);
+    }
+
+    @Test
+    void archivedTask_ShouldBeReadable_AndDeletableWithComments() {
+        TaskResponseDto task = taskService.create(task("Архивная для чтения"));
+        CommentResponseDto comment = commentService.create(task.getId(), new CommentRequestDto("Архивный комментарий"));
+        TaskResponseDto completed = taskService.updateStatus(task.getId(), new TaskUpdateStatusRequestDto(Status.COMPLETED), null);
+        jdbcTemplate.update("UPDATE t.tasks SET completed_at = now() - interval '60 days' WHERE id = ?", task.getId());
+        taskArchiveService.archive();
+        assertEquals(1, count("SELECT count(*) FROM t.tasks_archive WHERE executor_id = ?"));
+
+        assertEquals(Status.COMPLETED, taskService.getById(task.getId()).getStatus());
+        assertEquals(List.of(comment.getId()), taskService.getDetail(task.getId(), 5).getLatestComments().stream()
+                .map(CommentResponseDto::getId).toList());
+        assertEquals(List.of(comment.getId()), commentService.getAll(task.getId(), 0, 10).stream()
+                .map(CommentResponseDto::getId).toList());
+        assertEquals(1, commentService.count(task.getId()));
+        assertEquals(ETagUtils.of(task.getId(), completed.getVersion()), taskService.getETag(task.getId()));
+        String commentsETag = commentService.getETag(task.getId(), 0, 10);
+
+        TaskUpdateRequestDto rename = new TaskUpdateRequestDto();
+        rename.setTitle("Новое название");
+        assertThrows(ConflictException.class, () -> taskService.update(task.getId(), rename, null));
+        assertThrows(ConflictException.class, () -> commentService.create(task.getId(), new CommentRequestDto("Поздний комментарий")));
+        assertEquals(commentsETag, commentService.getETag(task.getId(), 0, 10));
+
+        assertTrue(taskService.delete(task.getId()));
+        assertThrows(EntityNotFoundException.class, () -> taskService.getById(task.getId()));
+        assertEquals(0, count("SELECT count(*) FROM t.comments_archive WHERE task_id = ?", task.getId()));
+        assertCountersMatchTasks(0);
+    }
+
+    @Test
+    void commentWrites_ShouldChangeCommentsETag_WithoutTouchingTaskRow() {
+        TaskResponseDto task = taskService.create(task("Обсуждаемая"));
+        String taskRow = jdbcTemplate.queryForObject("SELECT xmin::text FROM t.tasks WHERE id = ?", String.class, task.getId());
+        String created = commentService.getETag(task.getId(), 0, 10);
+
+        CommentResponseDto comment = commentService.create(task.getId(), new CommentRequestDto("Первая версия"));
+        String updated = commentService.getETag(task.getId(), 0, 10);
+        commentService.update(task.getId(), comment.getId(), new CommentRequestDto("Вторая версия"), null);
+        String deleted = commentService.getETag(task.getId(), 0, 10);
+        commentService.delete(task.getId(), comment.getId());
+
+        assertEquals(4, Set.of(created, updated, deleted, commentService.getETag(task.getId(), 0, 10)).size());
+        assertEquals(taskRow, jdbcTemplate.queryForObject("SELECT xmin::text FROM t.tasks WHERE id = ?", String.class, task.getId()));
+
+        assertTrue(taskService.delete(task.getId()));
+        assertEquals(0, count("SELECT count(*) FROM t.task_comment_revisions WHERE task_id = ?", task.getId()));
+    }
+
+    @Test
+    void search_ShouldFindTaskByComment_UntilCommentIsDeleted() {
+        TaskResponseDto task = taskService.create(task("Квартальный отчёт"));
+        CommentResponseDto comment = commentService.create(task.getId(), new CommentRequestDto("Не забыть про бухгалтерию"));
+
+        assertEquals(List.of(task.getId()), searchIds("бухгалтерия"));
+        assertEquals(List.of(task.getId()), searchIds("отчёт"));
+
+        commentService.delete(task.getId(), comment.getId());
+
+        assertTrue(searchIds("бухгалтерия").isEmpty());
+        assertEquals(List.of(task.getId()), searchIds("отчёт"));
+    }
+
+    @Test
+    void search_ShouldRankTitleMatchesFirst_AndApplyFiltersToCommentMatches() {
+        TaskResponseDto byComment = taskService.create(task("Планёрка"));
+        commentService.create(byComment.getId(), new CommentRequestDto("Обсудить инвентаризацию склада"));
+        commentService.create(byComment.getId(), new CommentRequestDto("Инвентаризация перенесена"));
+        TaskResponseDto byTitle = taskService.create(task("Инвентаризация склада"));
+        User otherExecutor = userRepository.save(new User(null, "other-" + UUID.randomUUID(), "password", Role.USER));
+        TaskResponseDto foreign = taskService.create(new TaskCreateRequestDto("Чужая задача", "", Priority.LOW, otherExecutor.getId()));
+        commentService.create(foreign.getId(), new CommentRequestDto("Инвентаризация у другого исполнителя"));
+
+        assertEquals(List.of(byTitle.getId(), byComment.getId()), searchIds("инвентаризация"));
+        assertEquals(List.of(foreign.getId()),
+                taskService.search("инвентаризация", 0, 10, otherExecutor.getId(), null).map(TaskResponseDto::getId).toList());
+        assertTrue(taskService.search("инвентаризация", 0, 10, null, admin.getId()).map(TaskResponseDto::getId).toList()
+                .containsAll(List.of(byTitle.getId(), byComment.getId(), foreign.getId())));
+    }
+
+    @Test
+    void delete_ShouldHideLargeTaskAtOnce_AndPurgeItInBackground() throws InterruptedException {
+        TaskResponseDto task = taskService.create(task("Большое обсуждение"));
+        jdbcTemplate.update("INSERT INTO t.comments (id, task_id, content, author_id) " +
+                "SELECT nextval('t.comments_id_seq'), ?, 'Обсуждение ' || g, ? FROM generate_series(1, 150) g", task.getId(), admin.getId());
+
+        assertFalse(taskService.delete(task.getId()));
+        assertEquals(0, taskStatisticsService.get(executor.getId(), null).getTotal());
+
+        assertThrows(EntityNotFoundException.class, () -> taskService.getById(task.getId()));
+        assertThrows(EntityNotFoundException.class, () -> commentService.create(task.getId(), new CommentRequestDto("Поздний комментарий")));
+        assertTrue(taskService.getAll(0, 10, executor.getId(), null, true).isEmpty());
+        assertTrue(searchIds("обсуждение").isEmpty());
+        awaitDeleted(task.getId());
+        assertEquals(0, count("SELECT count(*) FROM t.comments WHERE task_id = ?", task.getId()));
+        assertCountersMatchTasks(0);
+    }
+
+    @Test
+    void resume_ShouldFinishPurge_InterruptedBeforeTaskWasDeleted() throws InterruptedException {
+        TaskResponseDto task = taskService.create(task("Прерванное удаление"));
+        commentService.create(task.getId(), new CommentRequestDto("Комментарий"));
+        // отметка осталась от прерванного удаления, кэш второго уровня после перезапуска пуст
+        jdbcTemplate.update("UPDATE t.tasks SET deleting_at = now() WHERE id = ?", task.getId());
+        entityManagerFactory.getCache().evict(Task.class, task.getId());
+
+        taskPurgeService.resume();
+
+        awaitDeleted(task.getId());
+        assertEquals(0, count("SELECT count(*) FROM t.comments WHERE task_id = ?", task.getId()));
+        assertCountersMatchTasks(0);
+    }
+
+    private void awaitDeleted(Long taskId) throws InterruptedException {
+        for (int i = 0; i < 100 && count("SELECT count(*) FROM t.tasks WHERE id = ?", taskId) > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, count("SELECT count(*) FROM t.tasks WHERE id = ?", taskId));
+    }
+
+    private TaskCreateRequestDto task(String title) {
+        return new TaskCreateRequestDto(title, "Описание", Priority.MEDIUM, executor.getId());
+    }
+
+    private List<Long> searchIds(String query) {
+        return taskService.search(query, 0, 10, executor.getId(), null).map(TaskResponseDto::getId).toList();
+    }
+
+    @Test
+    void create_ShouldNotWaitForCounters_OfUncommittedTaskBySameAuthor() throws SQLException {
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            insertTask(first);
+            try (Statement timeout = second.createStatement()) {
+                timeout.execute("SET LOCAL lock_timeout = '1s'");
+            }
+            insertTask(second);
+            second.commit();
+            first.commit();
+        }
+        assertCountersMatchTasks(2);
+    }
+
+    @Test
+    void reconcile_ShouldRepairDrift_WithoutWaitingForTaskWriters() throws SQLException {
+        taskService.create(task("Сверяемая"));
+        jdbcTemplate.update("INSERT INTO t.task_counter_deltas (dimension, user_id, status, priority, delta) VALUES ('E', ?, 'WAITING', 'MEDIUM', 5)",
+                executor.getId());
+        try (Connection writer = dataSource.getConnection()) {
+            writer.setAutoCommit(false);
+            insertTask(writer);
+            Long drift = new TransactionTemplate(transactionManager).execute(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '1s'");
+                return taskStatisticsRepository.reconcile();
+            });
+            assertEquals(1, drift);
+            writer.commit();
+        }
+        assertCountersMatchTasks(2);
+    }
+
+    private void insertTask(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO t.tasks (title, status, priority, executor_id, author_id) VALUES ('Параллельная', 'WAITING', 'LOW', ?, ?)")) {
+            statement.setLong(1, executor.getId());
+            statement.setLong(2, admin.getId());
+            assertEquals(1, statement.executeUpdate());
+        }
+    }
+
+    /**
+     * Счётчики исполнителя, автора и всех задач совпадают с видимыми задачами основной таблицы и архива
+     * до и после свёртки журнала, а сверка не находит расхождений.
+     */
+    private void assertCountersMatchTasks(long expected) {
+        long actual = count("SELECT count(*) FROM (SELECT id FROM t.tasks WHERE executor_id = ? AND deleting_at IS NULL " +
+                "UNION ALL SELECT id FROM t.tasks_archive WHERE executor_id = ?) tasks", executor.getId(), executor.getId());
+        assertEquals(expected, actual);
+        long all = count("SELECT (SELECT count(*) FROM t.tasks WHERE deleting_at IS NULL) + (SELECT count(*) FROM t.tasks_archive)",
+                new Object[0]);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, taskStatisticsService.get(executor.getId(), null).getTotal());
+            assertEquals(expected, taskStatisticsService.get(null, admin.getId()).getTotal());
+            assertEquals(all, taskStatisticsService.get(null, null).getTotal());
+            taskStatisticsService.fold();
+        }
+        assertEquals(0, count("SELECT count(*) FROM t.task_counter_deltas", new Object[0]));
+        Long drift = new TransactionTemplate(transactionManager).execute(status -> taskStatisticsRepository.reconcile());
+        assertEquals(0, drift);
+    }
+
+    private long count(String sql) {
+        return count(sql, executor.getId());
+    }
+
+    private long count(String sql, Object... parameters) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, parameters);
+        return count == null ? 0 : count;
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,162 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.entity.Task;
+import org.effectivemobile.tms.repository.CommentPurgeRepository;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskPurgeServiceTest {
+
+    private TaskPurgeService taskPurgeService;
+
+    @Mock
+    private CommentPurgeRepository commentPurgeRepository;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private TaskSuggestService taskSuggestService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        taskPurgeService = new TaskPurgeService(commentPurgeRepository, taskRepository, taskSuggestService,
+                transactionManager, meterRegistry, 100, 10);
+    }
+
+    @Test
+    void isLarge_ShouldReadAtMostThresholdPlusOneComments() {
+        when(commentPurgeRepository.countUpTo(1L, 101)).thenReturn(101L);
+
+        assertTrue(taskPurgeService.isLarge(1L));
+    }
+
+    @Test
+    void isLarge_ShouldReturnFalse_WhenCommentsDoNotExceedThreshold() {
+        when(commentPurgeRepository.countUpTo(1L, 101)).thenReturn(100L);
+
+        assertFalse(taskPurgeService.isLarge(1L));
+    }
+
+    @Test
+    void schedule_ShouldHideTask_AndPurgeItOnlyAfterCommit() {
+        Task task = deletingTask();
+        task.setDeletingAt(null);
+        when(commentPurgeRepository.deleteChunk(1L, 10)).thenReturn(0);
+        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            taskPurgeService.schedule(task);
+
+            assertNotNull(task.getDeletingAt());
+            verify(taskRepository).saveAndFlush(task);
+            verify(taskSuggestService).remove(1L, 3L);
+            verifyNoInteractions(commentPurgeRepository);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(taskRepository, timeout(5000)).delete(task);
+    }
+
+    @Test
+    void resume_ShouldPurgeTasksMarkedForDeletion() {
+        Task task = deletingTask();
+        when(taskRepository.findDeletingIds()).thenReturn(List.of(1L));
+        when(commentPurgeRepository.deleteChunk(1L, 10)).thenReturn(0);
+        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
+
+        taskPurgeService.resume();
+
+        verify(taskRepository, timeout(5000)).delete(task);
+    }
+
+    @Test
+    void resume_ShouldCountFailure_AndKeepTaskForNextAttempt() throws InterruptedException {
+        when(taskRepository.findDeletingIds()).thenReturn(List.of(1L));
+        when(commentPurgeRepository.deleteChunk(1L, 10)).thenThrow(new QueryTimeoutException("timeout"));
+
+        taskPurgeService.resume();
+
+        Counter failed = meterRegistry.get("tasks.purge.failed").counter();
+        for (int i = 0; i < 50 && failed.count() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, failed.count());
+        verify(taskRepository, never()).delete(any(Task.class));
+    }
+
+    @Test
+    void purge_ShouldDeleteCommentsInChunks_ThenTask() {
+        Task task = deletingTask();
+
+        when(commentPurgeRepository.deleteChunk(1L, 10)).thenReturn(10, 10, 3);
+        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
+
+        taskPurgeService.purge(1L);
+
+        InOrder inOrder = inOrder(commentPurgeRepository, taskRepository);
+        inOrder.verify(commentPurgeRepository, times(3)).deleteChunk(1L, 10);
+        inOrder.verify(taskRepository).delete(task);
+        verify(taskSuggestService).remove(1L, 3L);
+        verify(transactionManager, times(4)).commit(any());
+    }
+
+    @Test
+    void purge_ShouldSkipTask_WhenItIsAlreadyDeleted() {
+        when(commentPurgeRepository.deleteChunk(1L, 10)).thenReturn(0);
+        when(taskRepository.findById(1L)).thenReturn(Optional.empty());
+
+        taskPurgeService.purge(1L);
+
+        verify(taskRepository, never()).delete(any(Task.class));
+        verifyNoInteractions(taskSuggestService);
+    }
+
+    @Test
+    void purge_ShouldKeepTask_WhenItIsNotMarkedForDeletion() {
+        Task task = deletingTask();
+        task.setDeletingAt(null);
+        when(commentPurgeRepository.deleteChunk(1L, 10)).thenReturn(0);
+        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
+
+        taskPurgeService.purge(1L);
+
+        verify(taskRepository, never()).delete(any(Task.class));
+    }
+
+    private static Task deletingTask() {
+        Task task = new Task();
+        task.setId(1L);
+        task.setVersion(3L);
+        task.setDeletingAt(Instant.now());
+        return task;
+    }
+}
@@ -1,30 +1,48 @@
 package org.effectivemobile.tms.service;
 
 import javax.persistence.EntityNotFoundException;
+import org.effectivemobile.tms.dto.task.TaskBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBatchItemResultDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskBulkStatusUpdateResponseDto;
+import org.effectivemobile.tms.dto.comment.CommentResponseDto;
 import org.effectivemobile.tms.dto.task.TaskCreateRequestDto;
+import org.effectivemobile.tms.dto.task.TaskDetailDto;
 import org.effectivemobile.tms.dto.task.TaskResponseDto;
 import org.effectivemobile.tms.dto.task.TaskUpdateRequestDto;
 import org.effectivemobile.tms.dto.task.TaskUpdateStatusRequestDto;
 import org.effectivemobile.tms.entity.Task;
 import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.exception.ConflictException;
 import org.effectivemobile.tms.mapper.TaskMapper;
+import org.effectivemobile.tms.repository.CommentRepository;
+import org.effectivemobile.tms.repository.TaskArchiveRepository;
 import org.effectivemobile.tms.repository.TaskRepository;
 import org.effectivemobile.tms.repository.UserRepository;
 import org.effectivemobile.tms.util.enums.Priority;
 import org.effectivemobile.tms.util.enums.Role;
 import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.etag.ETagUtils;
+import org.effectivemobile.tms.util.pagination.CursorUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,12 +61,30 @@ class TaskServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CommentRepository commentRepository;
+
     @Mock
     private TaskMapper taskMapper;
 
     @Mock
     private UserService userService;
 
+    @Mock
+    private TaskSuggestService taskSuggestService;
+
+    @Mock
+    private TaskPurgeService taskPurgeService;
+
+    @Mock
+    private TaskArchiveRepository taskArchiveRepository;
+
+    @Mock
+    private TaskArchiveService taskArchiveService;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager();
+
     private User admin;
 
     private User user;
@@ -77,6 +113,27 @@ class TaskServiceTest {
         task.setAuthor(admin);
     }
 
+    @Test
+    void getETag_ShouldReturnVersionOfTask_WhenUserIsExecutor() {
+        task.setVersion(3L);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertEquals("\"1-3\"", taskService.getETag(task.getId()));
+        verify(taskMapper, never()).entityToResponseDto(any(Task.class));
+    }
+
+    @Test
+    void getETag_ShouldThrowException_WhenUserIsNotExecutor() {
+        task.setExecutor(admin);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(AccessDeniedException.class, () -> taskService.getETag(task.getId()));
+    }
+
     @Test
     void create_ShouldSucceed_WhenAdminCreatesTask() {
         TaskCreateRequestDto dto = new TaskCreateRequestDto();
@@ -131,20 +188,119 @@ class TaskServiceTest {
         verify(taskRepository, never()).save(any(Task.class));
     }
 
+    @Test
+    void createBatch_ShouldCreateTasksAndReportMissingExecutors_WhenAdminCreatesTasks() {
+        TaskCreateRequestDto first = new TaskCreateRequestDto();
+        first.setTitle("First Task");
+        first.setExecutorId(user.getId());
+        TaskCreateRequestDto second = new TaskCreateRequestDto();
+        second.setTitle("Second Task");
+        second.setExecutorId(99L);
+        TaskBatchCreateRequestDto dto = new TaskBatchCreateRequestDto();
+        dto.setTasks(List.of(first, second));
+
+        TaskResponseDto expectedResponseDto = new TaskResponseDto();
+        expectedResponseDto.setTitle(first.getTitle());
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(user));
+        when(taskMapper.entityToResponseDto(any(Task.class))).thenReturn(expectedResponseDto);
+
+        List<TaskBatchItemResultDto> results = taskService.createBatch(dto);
+
+        assertEquals(2, results.size());
+        assertSame(expectedResponseDto, results.get(0).getTask());
+        assertNull(results.get(0).getError());
+        assertNull(results.get(1).getTask());
+        assertEquals("Исполнитель не найден", results.get(1).getError());
+        verify(userRepository, times(1)).findAllById(anyIterable());
+        verify(taskRepository, times(1)).saveAll(argThat(tasks -> tasks.spliterator().getExactSizeIfKnown() == 1));
+    }
+
+    @Test
+    void createBatch_ShouldThrowException_WhenUserCreatesTasks() {
+        TaskBatchCreateRequestDto dto = new TaskBatchCreateRequestDto();
+        dto.setTasks(List.of(new TaskCreateRequestDto()));
+
+        when(userService.getCurrentUser()).thenReturn(user);
+
+        assertThrows(AccessDeniedException.class, () -> taskService.createBatch(dto));
+        verify(taskRepository, never()).saveAll(anyIterable());
+    }
+
+
+    @Test
+    void updateStatuses_ShouldRestrictUpdateToExecutor_WhenUserUpdatesTasks() {
+        TaskBulkStatusUpdateRequestDto dto = new TaskBulkStatusUpdateRequestDto(List.of(1L, 2L, 3L, 1L), Status.COMPLETED);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.updateStatusByExecutor(anyCollection(), eq("COMPLETED"), eq(user.getId()))).thenReturn(List.of(3L, 1L));
+
+        TaskBulkStatusUpdateResponseDto result = taskService.updateStatuses(dto);
+
+        assertEquals(List.of(1L, 3L), result.getUpdated());
+        assertEquals(List.of(2L), result.getRejected());
+        verify(taskRepository, never()).updateStatus(anyCollection(), anyString());
+        verify(taskRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void updateStatuses_ShouldUpdateAnyTasks_WhenAdminUpdatesTasks() {
+        TaskBulkStatusUpdateRequestDto dto = new TaskBulkStatusUpdateRequestDto(List.of(1L, 2L), Status.IN_PROGRESS);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.updateStatus(anyCollection(), eq("IN_PROGRESS"))).thenReturn(List.of(1L));
+
+        TaskBulkStatusUpdateResponseDto result = taskService.updateStatuses(dto);
+
+        assertEquals(List.of(1L), result.getUpdated());
+        assertEquals(List.of(2L), result.getRejected());
+        verify(taskRepository, never()).updateStatusByExecutor(anyCollection(), anyString(), anyLong());
+    }
+
+    @Test
+    void updateStatuses_ShouldRestoreArchivedTasks_WhenStatusIsReopened() {
+        TaskBulkStatusUpdateRequestDto dto = new TaskBulkStatusUpdateRequestDto(List.of(1L, 2L, 3L), Status.IN_PROGRESS);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.updateStatusByExecutor(argThat(ids -> ids.size() == 3), eq("IN_PROGRESS"), eq(user.getId()))).thenReturn(List.of(1L));
+        when(taskArchiveService.restore(List.of(2L, 3L), user.getId())).thenReturn(List.of(3L));
+        when(taskRepository.updateStatusByExecutor(List.of(3L), "IN_PROGRESS", user.getId())).thenReturn(List.of(3L));
+
+        TaskBulkStatusUpdateResponseDto result = taskService.updateStatuses(dto);
+
+        assertEquals(List.of(1L, 3L), result.getUpdated());
+        assertEquals(List.of(2L), result.getRejected());
+    }
+
+    @Test
+    void updateStatuses_ShouldNotRestoreArchivedTasks_WhenStatusIsCompleted() {
+        TaskBulkStatusUpdateRequestDto dto = new TaskBulkStatusUpdateRequestDto(List.of(1L, 2L), Status.COMPLETED);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.updateStatus(anyCollection(), eq("COMPLETED"))).thenReturn(List.of(1L));
+
+        TaskBulkStatusUpdateResponseDto result = taskService.updateStatuses(dto);
+
+        assertEquals(List.of(2L), result.getRejected());
+        verifyNoInteractions(taskArchiveService);
+    }
 
     @Test
     void update_ShouldSucceed_WhenAdminUpdatesExistingTask() {
         TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
         dto.setTitle("Updated Task");
+        TaskResponseDto expectedResponseDto = new TaskResponseDto();
+        expectedResponseDto.setTitle("Updated Task");
 
-        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
         when(userService.getCurrentUser()).thenReturn(admin);
-        when(taskMapper.entityToResponseDto(any(Task.class))).thenReturn(new TaskResponseDto());
+        when(taskRepository.update(task.getId(), dto, null, null)).thenReturn(Optional.of(expectedResponseDto));
 
-        TaskResponseDto result = taskService.update(task.getId(), dto);
+        TaskResponseDto result = taskService.update(task.getId(), dto, null);
 
-        assertNotNull(result);
-        assertEquals("Updated Task", task.getTitle());
+        assertEquals("Updated Task", result.getTitle());
+        verify(taskRepository, never()).findById(anyLong());
+        verify(taskSuggestService).put(argThat(title -> "Updated Task".equals(title.title())));
     }
 
     @Test
@@ -152,10 +308,39 @@ class TaskServiceTest {
         TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
         dto.setTitle("Updated Task");
 
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.update(task.getId(), dto, null, null)).thenReturn(Optional.empty());
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, () -> taskService.update(task.getId(), dto, null));
+    }
+
+    @Test
+    void update_ShouldThrowConflict_WhenTaskIsArchived() {
+        TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
+        dto.setTitle("Updated Task");
+        task.setArchived(true);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.update(task.getId(), dto, null, null)).thenReturn(Optional.empty());
         when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(ConflictException.class, () -> taskService.update(task.getId(), dto, null));
+        verifyNoInteractions(taskSuggestService);
+    }
+
+    @Test
+    void update_ShouldThrowException_WhenExecutorDoesNotExist() {
+        TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
+        dto.setExecutorId(42L);
+
         when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findById(42L)).thenReturn(Optional.empty());
 
-        assertThrows(EntityNotFoundException.class, () -> taskService.update(task.getId(), dto));
+        assertThrows(EntityNotFoundException.class, () -> taskService.update(task.getId(), dto, null));
+        verify(taskRepository, never()).update(anyLong(), any(), any(), any());
     }
 
     @Test
@@ -165,8 +350,45 @@ class TaskServiceTest {
 
         when(userService.getCurrentUser()).thenReturn(user);
 
-        assertThrows(AccessDeniedException.class, () -> taskService.update(task.getId(), dto));
-        verify(taskRepository, never()).save(any(Task.class));
+        assertThrows(AccessDeniedException.class, () -> taskService.update(task.getId(), dto, null));
+        verify(taskRepository, never()).update(anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void update_ShouldRequireVersion_WhenIfMatchIsGiven() {
+        TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
+        dto.setTitle("Updated Task");
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.update(task.getId(), dto, null, List.of(3L))).thenReturn(Optional.of(new TaskResponseDto()));
+
+        assertNotNull(taskService.update(task.getId(), dto, ETagUtils.of(task.getId(), 3L)));
+    }
+
+    @Test
+    void update_ShouldThrowException_WhenIfMatchIsStaleVersion() {
+        TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
+        dto.setTitle("Updated Task");
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.update(task.getId(), dto, null, List.of(2L))).thenReturn(Optional.empty());
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> taskService.update(task.getId(), dto, ETagUtils.of(task.getId(), 2L)));
+    }
+
+    @Test
+    void update_ShouldNotQueryUpdate_WhenIfMatchIsForAnotherTask() {
+        TaskUpdateRequestDto dto = new TaskUpdateRequestDto();
+        dto.setTitle("Updated Task");
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> taskService.update(task.getId(), dto, ETagUtils.of(task.getId() + 1, 0L)));
+        verify(taskRepository, never()).update(anyLong(), any(), any(), any());
     }
 
     @Test
@@ -174,8 +396,37 @@ class TaskServiceTest {
         when(userService.getCurrentUser()).thenReturn(admin);
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
 
-        taskService.delete(task.getId());
+        assertTrue(taskService.delete(task.getId()));
         verify(taskRepository).delete(task);
+        verify(taskSuggestService).remove(task.getId(), task.getVersion());
+        verify(taskPurgeService, never()).schedule(any(Task.class));
+    }
+
+    @Test
+    void delete_ShouldSchedulePurge_WhenTaskHasManyComments() {
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskPurgeService.isLarge(task.getId())).thenReturn(true);
+
+        assertFalse(taskService.delete(task.getId()));
+        verify(taskPurgeService).schedule(task);
+        verify(taskRepository, never()).delete(any(Task.class));
+        verifyNoInteractions(taskSuggestService);
+    }
+
+    @Test
+    void delete_ShouldDeleteFromArchive_WhenTaskIsArchived() {
+        task.setArchived(true);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskArchiveRepository.delete(task.getId())).thenReturn(true);
+
+        assertTrue(taskService.delete(task.getId()));
+        verify(taskRepository, never()).delete(any(Task.class));
+        verifyNoInteractions(taskPurgeService, taskSuggestService);
     }
 
     @Test
@@ -193,23 +444,21 @@ class TaskServiceTest {
 
         assertThrows(AccessDeniedException.class, () -> taskService.delete(task.getId()));
         verify(taskRepository, never()).deleteById(anyLong());
+        verifyNoInteractions(taskSuggestService);
     }
 
     @Test
     void updateStatus_ShouldSucceed_WhenAdminUpdatesStatus() {
         TaskUpdateStatusRequestDto dto = new TaskUpdateStatusRequestDto();
         dto.setStatus(Status.IN_PROGRESS);
-
-        when(userService.getCurrentUser()).thenReturn(admin);
-        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
-
-
         TaskResponseDto expectedResponseDto = new TaskResponseDto();
         expectedResponseDto.setStatus(Status.IN_PROGRESS);
 
-        when(taskMapper.entityToResponseDto(task)).thenReturn(expectedResponseDto);
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.update(eq(task.getId()), argThat(changes -> changes.getStatus() == Status.IN_PROGRESS), isNull(), isNull()))
+                .thenReturn(Optional.of(expectedResponseDto));
 
-        TaskResponseDto result = taskService.updateStatus(task.getId(), dto);
+        TaskResponseDto result = taskService.updateStatus(task.getId(), dto, null);
 
         assertEquals(Status.IN_PROGRESS, result.getStatus());
     }
@@ -218,18 +467,17 @@ class TaskServiceTest {
     void updateStatus_ShouldSucceed_WhenUserUpdatesTheirTaskStatus() {
         TaskUpdateStatusRequestDto dto = new TaskUpdateStatusRequestDto();
         dto.setStatus(Status.COMPLETED);
-
-        when(userService.getCurrentUser()).thenReturn(user);
-        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
-
         TaskResponseDto expectedResponseDto = new TaskResponseDto();
         expectedResponseDto.setStatus(Status.COMPLETED);
 
-        when(taskMapper.entityToResponseDto(task)).thenReturn(expectedResponseDto);
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.update(eq(task.getId()), any(TaskUpdateRequestDto.class), eq(user.getId()), isNull()))
+                .thenReturn(Optional.of(expectedResponseDto));
 
-        TaskResponseDto result = taskService.updateStatus(task.getId(), dto);
+        TaskResponseDto result = taskService.updateStatus(task.getId(), dto, null);
 
         assertEquals(Status.COMPLETED, result.getStatus());
+        verify(taskRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -242,9 +490,58 @@ class TaskServiceTest {
         dto.setStatus(Status.COMPLETED);
 
         when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.update(eq(anotherTask.getId()), any(TaskUpdateRequestDto.class), eq(user.getId()), isNull()))
+                .thenReturn(Optional.empty());
         when(taskRepository.findById(anotherTask.getId())).thenReturn(Optional.of(anotherTask));
 
-        assertThrows(AccessDeniedException.class, () -> taskService.updateStatus(anotherTask.getId(), dto));
+        assertThrows(AccessDeniedException.class, () -> taskService.updateStatus(anotherTask.getId(), dto, null));
+    }
+
+    @Test
+    void updateStatus_ShouldThrowException_WhenIfMatchIsStaleVersion() {
+        TaskUpdateStatusRequestDto dto = new TaskUpdateStatusRequestDto();
+        dto.setStatus(Status.COMPLETED);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.update(eq(task.getId()), any(TaskUpdateRequestDto.class), eq(user.getId()), eq(List.of(0L))))
+                .thenReturn(Optional.empty());
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> taskService.updateStatus(task.getId(), dto, ETagUtils.of(task.getId(), 0L)));
+    }
+
+    @Test
+    void updateStatus_ShouldRestoreArchivedTask_WhenStatusIsReopened() {
+        TaskUpdateStatusRequestDto dto = new TaskUpdateStatusRequestDto();
+        dto.setStatus(Status.IN_PROGRESS);
+        TaskResponseDto expectedResponseDto = new TaskResponseDto();
+        expectedResponseDto.setStatus(Status.IN_PROGRESS);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.update(eq(task.getId()), any(TaskUpdateRequestDto.class), eq(user.getId()), eq(List.of(3L))))
+                .thenReturn(Optional.empty(), Optional.of(expectedResponseDto));
+        when(taskArchiveService.restore(List.of(task.getId()), user.getId())).thenReturn(List.of(task.getId()));
+
+        TaskResponseDto result = taskService.updateStatus(task.getId(), dto, ETagUtils.of(task.getId(), 3L));
+
+        assertEquals(Status.IN_PROGRESS, result.getStatus());
+        verify(taskRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void updateStatus_ShouldThrowException_WhenArchivedTaskIsNotRestored() {
+        TaskUpdateStatusRequestDto dto = new TaskUpdateStatusRequestDto();
+        dto.setStatus(Status.WAITING);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.update(eq(task.getId()), any(TaskUpdateRequestDto.class), eq(user.getId()), isNull()))
+                .thenReturn(Optional.empty());
+        when(taskArchiveService.restore(List.of(task.getId()), user.getId())).thenReturn(List.of());
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, () -> taskService.updateStatus(task.getId(), dto, null));
+        verify(taskRepository, times(1)).update(any(), any(), any(), any());
     }
 
     @Test
@@ -281,29 +578,239 @@ class TaskServiceTest {
         assertThrows(AccessDeniedException.class, () -> taskService.getById(anotherTask.getId()));
     }
 
+    @Test
+    void getById_ShouldThrowException_WhenTaskIsBeingDeleted() {
+        task.setDeletingAt(Instant.now());
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(EntityNotFoundException.class, () -> taskService.getById(task.getId()));
+    }
+
+    @Test
+    void getById_ShouldReadArchive_WhenTaskIsArchived() {
+        task.setArchived(true);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskMapper.entityToResponseDto(task)).thenReturn(new TaskResponseDto());
+
+        assertNotNull(taskService.getById(task.getId()));
+    }
+
+    @Test
+    void getDetail_ShouldReadCommentsFromArchive_WhenTaskIsArchived() {
+        task.setArchived(true);
+        List<CommentResponseDto> comments = List.of(new CommentResponseDto(9L, task.getId(), "Latest", user.getId(), 0L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.empty());
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskMapper.entityToResponseDto(task)).thenReturn(new TaskResponseDto());
+        when(taskArchiveRepository.findCommentsBefore(task.getId(), Long.MAX_VALUE, PageRequest.of(0, 1)))
+                .thenReturn(new SliceImpl<>(comments, PageRequest.of(0, 1), true));
+        when(taskArchiveRepository.countComments(task.getId())).thenReturn(4L);
+
+        TaskDetailDto result = taskService.getDetail(task.getId(), 1);
+
+        assertEquals(4L, result.getCommentCount());
+        assertEquals(comments, result.getLatestComments());
+        verifyNoInteractions(commentRepository);
+    }
+
+    @Test
+    void getDetail_ShouldCountCommentsFromPage_WhenAllCommentsFit() {
+        List<CommentResponseDto> comments = List.of(new CommentResponseDto(7L, task.getId(), "Second", user.getId(), 0L),
+                new CommentResponseDto(3L, task.getId(), "First", admin.getId(), 0L));
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskMapper.entityToResponseDto(task)).thenReturn(new TaskResponseDto());
+        when(commentRepository.findAllByTaskIdBefore(task.getId(), Long.MAX_VALUE, PageRequest.of(0, 5)))
+                .thenReturn(new SliceImpl<>(comments, PageRequest.of(0, 5), false));
+
+        TaskDetailDto result = taskService.getDetail(task.getId(), 5);
+
+        assertEquals(2L, result.getCommentCount());
+        assertEquals(comments, result.getLatestComments());
+        assertNull(result.getOlderCommentsCursor());
+        verify(commentRepository, never()).countByTaskId(any());
+    }
+
+    @Test
+    void getDetail_ShouldReturnCursorAndCount_WhenOlderCommentsExist() {
+        List<CommentResponseDto> comments = List.of(new CommentResponseDto(9L, task.getId(), "Latest", user.getId(), 0L),
+                new CommentResponseDto(8L, task.getId(), "Previous", user.getId(), 0L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskMapper.entityToResponseDto(task)).thenReturn(new TaskResponseDto());
+        when(commentRepository.findAllByTaskIdBefore(task.getId(), Long.MAX_VALUE, PageRequest.of(0, 2)))
+                .thenReturn(new SliceImpl<>(comments, PageRequest.of(0, 2), true));
+        when(commentRepository.countByTaskId(task.getId())).thenReturn(6L);
+
+        TaskDetailDto result = taskService.getDetail(task.getId(), 2);
+
+        assertEquals(6L, result.getCommentCount());
+        assertEquals(8L, CursorUtils.decode(result.getOlderCommentsCursor()));
+    }
+
+    @Test
+    void getDetail_ShouldThrowException_WhenUserGetsNotTheirTask() {
+        task.setExecutor(admin);
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        assertThrows(AccessDeniedException.class, () -> taskService.getDetail(task.getId(), 5));
+        verifyNoInteractions(commentRepository);
+    }
+
+    @Test
+    void getDetail_ShouldThrowException_WhenCommentsLimitIsOutOfRange() {
+        assertThrows(BadRequestException.class, () -> taskService.getDetail(task.getId(), TaskService.MAX_LATEST_COMMENTS + 1));
+        verifyNoInteractions(taskRepository, commentRepository);
+    }
+
     @Test
     void getAll_ShouldSucceed_WhenAdminGetsAllTasks() {
-        Page<Task> tasksPage = new PageImpl<>(List.of(task));
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()));
 
         when(userService.getCurrentUser()).thenReturn(admin);
-        when(taskRepository.findAll(any(Specification.class), any(PageRequest.class))).thenReturn(tasksPage);
+        when(taskRepository.findSlice(any(Specification.class), any(PageRequest.class))).thenReturn(tasksSlice);
 
-        List<TaskResponseDto> result = taskService.getAll(0, 10, null, null);
+        Slice<TaskResponseDto> result = taskService.getAll(0, 10, null, null, false);
 
         assertNotNull(result);
-        assertEquals(1, result.size());
+        assertEquals(1, result.getNumberOfElements());
     }
 
     @Test
     void getAll_ShouldSucceed_WhenUserGetsTheirTasks() {
-        Page<Task> tasksPage = new PageImpl<>(List.of(task));
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()));
 
         when(userService.getCurrentUser()).thenReturn(user);
-        when(taskRepository.findAll(any(Specification.class), any(PageRequest.class))).thenReturn(tasksPage);
+        when(taskRepository.findSlice(any(Specification.class), any(PageRequest.class))).thenReturn(tasksSlice);
 
-        List<TaskResponseDto> result = taskService.getAll(0, 10, user.getId(), null);
+        Slice<TaskResponseDto> result = taskService.getAll(0, 10, user.getId(), null, false);
 
         assertNotNull(result);
-        assertEquals(1, result.size());
+        assertEquals(1, result.getNumberOfElements());
+    }
+
+    @Test
+    void getAll_ShouldReadArchiveOnlyTheirTasks_WhenUserIncludesArchived() {
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto(), new TaskResponseDto()));
+
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findSlice(user.getId(), null, null, PageRequest.of(0, 10, Sort.by("id")))).thenReturn(tasksSlice);
+
+        Slice<TaskResponseDto> result = taskService.getAll(0, 10, admin.getId(), admin.getId(), true);
+
+        assertEquals(2, result.getNumberOfElements());
+        verify(taskRepository, never()).findSlice(any(), any());
+    }
+
+    @Test
+    void getAllAfter_ShouldPassCursorToArchive_WhenAdminIncludesArchived() {
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.findSlice(user.getId(), null, 5L, PageRequest.of(0, 10, Sort.by("id")))).thenReturn(tasksSlice);
+
+        Slice<TaskResponseDto> result = taskService.getAllAfter(CursorUtils.encode(5L), 10, user.getId(), null, true);
+
+        assertEquals(1, result.getNumberOfElements());
+    }
+
+    @Test
+    void getAll_ShouldReadOnlyTasksTable_WhenArchiveIsNotSupported() {
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskArchiveRepository.isSupported()).thenReturn(false);
+        when(taskRepository.findSlice(any(Specification.class), any(PageRequest.class))).thenReturn(tasksSlice);
+
+        Slice<TaskResponseDto> result = taskService.getAll(0, 10, null, null, true);
+
+        assertEquals(1, result.getNumberOfElements());
+        verify(taskArchiveRepository, never()).findSlice(any(), any(), any(), any());
+    }
+
+    @Test
+    void getAllAfter_ShouldReadSliceOrderedById_WhenCursorIsValid() {
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()), PageRequest.of(0, 10, Sort.by("id")), true);
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.findSlice(any(Specification.class), eq(PageRequest.of(0, 10, Sort.by("id"))))).thenReturn(tasksSlice);
+
+        Slice<TaskResponseDto> result = taskService.getAllAfter(CursorUtils.encode(5L), 10, null, null, false);
+
+        assertEquals(1, result.getNumberOfElements());
+        assertTrue(result.hasNext());
+    }
+
+    @Test
+    void getAllAfter_ShouldThrowException_WhenCursorIsMalformed() {
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertThrows(BadRequestException.class, () -> taskService.getAllAfter("???", 10, null, null, false));
+        verify(taskRepository, never()).findSlice(any(), any());
+    }
+
+    @Test
+    void search_ShouldSearchOnlyTheirTasks_WhenUserSearches() {
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()));
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.search("отчёт", user.getId(), null, PageRequest.of(0, 10))).thenReturn(tasksSlice);
+
+        Slice<TaskResponseDto> result = taskService.search("отчёт", 0, 10, admin.getId(), admin.getId());
+
+        assertEquals(1, result.getNumberOfElements());
+    }
+
+    @Test
+    void search_ShouldApplyFilters_WhenAdminSearches() {
+        Slice<TaskResponseDto> tasksSlice = new SliceImpl<>(List.of(new TaskResponseDto()));
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskRepository.search("отчёт", user.getId(), admin.getId(), PageRequest.of(1, 5))).thenReturn(tasksSlice);
+
+        Slice<TaskResponseDto> result = taskService.search("отчёт", 1, 5, user.getId(), admin.getId());
+
+        assertEquals(1, result.getNumberOfElements());
+    }
+
+    @Test
+    void search_ShouldThrowException_WhenQueryIsBlank() {
+        assertThrows(BadRequestException.class, () -> taskService.search(" ", 0, 10, null, null));
+        verify(taskRepository, never()).search(any(), any(), any(), any());
+    }
+
+    @Test
+    void count_ShouldQueryRepositoryOnce_WhenCalledRepeatedly() {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.count(any(Specification.class))).thenReturn(3L);
+
+        assertEquals(3L, taskService.count(null, null, false));
+        assertEquals(3L, taskService.count(null, null, false));
+
+        verify(taskRepository, times(1)).count(any(Specification.class));
+    }
+
+    @Test
+    void count_ShouldAddArchivedTasks_WhenIncludeArchived() {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskRepository.count(any(Specification.class))).thenReturn(3L);
+        when(taskArchiveRepository.isSupported()).thenReturn(true);
+        when(taskArchiveRepository.count(user.getId(), null)).thenReturn(4L);
+
+        assertEquals(7L, taskService.count(null, null, true));
+        assertEquals(3L, taskService.count(null, null, false));
     }
 }
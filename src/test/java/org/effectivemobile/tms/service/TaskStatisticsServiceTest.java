@@ -0,0 +1,114 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.dto.task.TaskStatisticsDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.repository.TaskStatisticsRepository;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.statistics.TaskCount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskStatisticsServiceTest {
+
+    private TaskStatisticsService taskStatisticsService;
+
+    @Mock
+    private TaskStatisticsRepository taskStatisticsRepository;
+
+    @Mock
+    private UserService userService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private User admin;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        taskStatisticsService = new TaskStatisticsService(taskStatisticsRepository, userService, meterRegistry);
+
+        admin = new User();
+        admin.setId(1L);
+        admin.setUsername("admin");
+        admin.setRole(Role.ADMIN);
+
+        user = new User();
+        user.setId(2L);
+        user.setUsername("user");
+        user.setRole(Role.USER);
+    }
+
+    @Test
+    void get_ShouldSumCountersByStatusAndPriority_WhenUserIsNotAdmin() {
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(taskStatisticsRepository.countByExecutor(user.getId())).thenReturn(List.of(
+                new TaskCount(Status.WAITING, Priority.LOW, 2),
+                new TaskCount(Status.WAITING, Priority.HIGH, 3),
+                new TaskCount(Status.COMPLETED, Priority.HIGH, 4)));
+
+        TaskStatisticsDto result = taskStatisticsService.get(3L, 1L);
+
+        assertEquals(9, result.getTotal());
+        assertEquals(5, result.getByStatus().get(Status.WAITING));
+        assertEquals(0, result.getByStatus().get(Status.IN_PROGRESS));
+        assertEquals(7, result.getByPriority().get(Priority.HIGH));
+        assertEquals(0, result.getByPriority().get(Priority.MEDIUM));
+        assertEquals(4, result.getByStatusAndPriority().get(Status.COMPLETED).get(Priority.HIGH));
+        assertEquals(0, result.getByStatusAndPriority().get(Status.COMPLETED).get(Priority.LOW));
+        verify(taskStatisticsRepository, never()).countByAuthor(any());
+    }
+
+    @Test
+    void get_ShouldUseAuthorCounters_WhenAdminFiltersByAuthor() {
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskStatisticsRepository.countByAuthor(admin.getId())).thenReturn(List.of(new TaskCount(Status.IN_PROGRESS, Priority.MEDIUM, 6)));
+
+        TaskStatisticsDto result = taskStatisticsService.get(null, admin.getId());
+
+        assertEquals(6, result.getTotal());
+        verify(taskStatisticsRepository, never()).countByExecutor(any());
+    }
+
+    @Test
+    void get_ShouldUseAllExecutorCounters_WhenAdminDoesNotFilter() {
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(taskStatisticsRepository.countByExecutor(null)).thenReturn(List.of());
+
+        TaskStatisticsDto result = taskStatisticsService.get(null, null);
+
+        assertEquals(0, result.getTotal());
+        assertEquals(Status.values().length, result.getByStatus().size());
+    }
+
+    @Test
+    void get_ShouldThrowException_WhenAdminFiltersByExecutorAndAuthor() {
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertThrows(BadRequestException.class, () -> taskStatisticsService.get(user.getId(), admin.getId()));
+        verifyNoInteractions(taskStatisticsRepository);
+    }
+
+    @Test
+    void reconcile_ShouldRecordCorrectedCounters() {
+        when(taskStatisticsRepository.reconcile()).thenReturn(3L);
+
+        taskStatisticsService.reconcile();
+
+        assertEquals(3, meterRegistry.get("tasks.statistics.drift").counter().count());
+    }
+}
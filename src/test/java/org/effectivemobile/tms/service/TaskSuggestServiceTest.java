@@ -0,0 +1,197 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.dto.task.TaskResponseDto;
+import org.effectivemobile.tms.dto.task.TaskSuggestionDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.exception.BadRequestException;
+import org.effectivemobile.tms.repository.TaskRepository;
+import org.effectivemobile.tms.util.enums.Priority;
+import org.effectivemobile.tms.util.enums.Role;
+import org.effectivemobile.tms.util.enums.Status;
+import org.effectivemobile.tms.util.suggest.TaskTitle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskSuggestServiceTest {
+
+    private TaskSuggestService taskSuggestService;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private User admin;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        taskSuggestService = new TaskSuggestService(taskRepository, userService, transactionManager, new SimpleMeterRegistry());
+
+        admin = new User();
+        admin.setId(1L);
+        admin.setUsername("admin");
+        admin.setRole(Role.ADMIN);
+
+        user = new User();
+        user.setId(2L);
+        user.setUsername("user");
+        user.setRole(Role.USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void suggest_ShouldReturnExactWordFirst_WhenPrefixMatchesSeveralWords() {
+        taskSuggestService.put(new TaskTitle(1L, "Отчётность за квартал", 2L, 1L, 0L));
+        taskSuggestService.put(new TaskTitle(2L, "Подготовить отчет", 2L, 1L, 0L));
+        taskSuggestService.put(new TaskTitle(3L, "Исправить ошибку", 2L, 1L, 0L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertEquals(List.of(2L, 1L), ids(taskSuggestService.suggest("ОТЧЕ", 10, null, null)));
+        assertEquals(List.of(2L), ids(taskSuggestService.suggest("отчет", 1, null, null)));
+        assertEquals(List.of(1L), ids(taskSuggestService.suggest("квартал отчёт", 10, null, null)));
+        assertEquals(List.of(), taskSuggestService.suggest(" - ", 10, null, null));
+    }
+
+    @Test
+    void suggest_ShouldReturnOnlyOwnTasks_WhenUserIsNotAdmin() {
+        taskSuggestService.put(new TaskTitle(1L, "Report", user.getId(), admin.getId(), 0L));
+        taskSuggestService.put(new TaskTitle(2L, "Report", 3L, admin.getId(), 0L));
+
+        when(userService.getCurrentUser()).thenReturn(user);
+
+        List<TaskSuggestionDto> result = taskSuggestService.suggest("rep", 10, 3L, null);
+
+        assertEquals(List.of(1L), ids(result));
+        assertEquals("Report", result.get(0).getTitle());
+    }
+
+    @Test
+    void suggest_ShouldFilterByExecutorAndAuthor_WhenUserIsAdmin() {
+        taskSuggestService.put(new TaskTitle(1L, "Report", 2L, 1L, 0L));
+        taskSuggestService.put(new TaskTitle(2L, "Report", 3L, 1L, 0L));
+        taskSuggestService.put(new TaskTitle(3L, "Report", 3L, 4L, 0L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertEquals(List.of(2L, 3L), ids(taskSuggestService.suggest("rep", 10, 3L, null)));
+        assertEquals(List.of(3L), ids(taskSuggestService.suggest("rep", 10, null, 4L)));
+    }
+
+    @Test
+    void suggest_ShouldKeepLatestState_WhenTaskIsRenamedOrRemoved() {
+        taskSuggestService.put(new TaskTitle(1L, "Old title", 2L, 1L, 0L));
+        taskSuggestService.put(new TaskTitle(1L, "New title", 3L, 1L, 2L));
+        taskSuggestService.put(new TaskTitle(1L, "Stale title", 2L, 1L, 1L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertEquals(List.of(), taskSuggestService.suggest("old", 10, null, null));
+        assertEquals(List.of(), taskSuggestService.suggest("stale", 10, null, null));
+        assertEquals(List.of(), taskSuggestService.suggest("title", 10, 2L, null));
+        assertEquals(List.of(1L), ids(taskSuggestService.suggest("new", 10, 3L, null)));
+
+        taskSuggestService.remove(1L, 2L);
+
+        assertEquals(List.of(), taskSuggestService.suggest("title", 10, null, null));
+    }
+
+    @Test
+    void put_ShouldNotReturnRemovedTask_WhenVersionIsNotNewer() {
+        taskSuggestService.put(new TaskTitle(1L, "Report", 2L, 1L, 3L));
+        taskSuggestService.remove(1L, 3L);
+        taskSuggestService.put(new TaskTitle(1L, "Report", 2L, 1L, 3L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertEquals(List.of(), taskSuggestService.suggest("rep", 10, null, null));
+
+        taskSuggestService.put(new TaskTitle(1L, "Report", 2L, 1L, 4L));
+
+        assertEquals(List.of(1L), ids(taskSuggestService.suggest("rep", 10, null, null)));
+    }
+
+    @Test
+    void restoreAll_ShouldReturnRemovedTask_WithSameVersion() {
+        taskSuggestService.put(new TaskTitle(1L, "Report", 2L, 1L, 3L));
+        taskSuggestService.remove(1L, 3L);
+        taskSuggestService.restoreAll(List.of(new TaskTitle(1L, "Report", 2L, 1L, 2L)));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertEquals(List.of(), taskSuggestService.suggest("rep", 10, null, null));
+
+        taskSuggestService.restoreAll(List.of(new TaskTitle(1L, "Report", 2L, 1L, 3L)));
+
+        assertEquals(List.of(1L), ids(taskSuggestService.suggest("rep", 10, null, null)));
+    }
+
+    @Test
+    void put_ShouldApplyChangesAfterCommit_WhenTransactionIsActive() {
+        TransactionSynchronizationManager.initSynchronization();
+        taskSuggestService.put(new TaskTitle(1L, "Committed", 2L, 1L, 0L));
+        taskSuggestService.put(new TaskTitle(2L, "Rolled back", 2L, 1L, 0L));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+
+        assertEquals(List.of(), taskSuggestService.suggest("committed", 10, null, null));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.get(0).afterCommit();
+        synchronizations.get(1).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(List.of(1L), ids(taskSuggestService.suggest("committed", 10, null, null)));
+        assertEquals(List.of(), taskSuggestService.suggest("rolled", 10, null, null));
+    }
+
+    @Test
+    void suggest_ShouldThrowException_WhenLimitIsOutOfRange() {
+        assertThrows(BadRequestException.class, () -> taskSuggestService.suggest("task", 0, null, null));
+        assertThrows(BadRequestException.class, () -> taskSuggestService.suggest("task", TaskSuggestService.MAX_LIMIT + 1, null, null));
+    }
+
+    @Test
+    void afterSingletonsInstantiated_ShouldLoadTasksFromRepository() {
+        TaskResponseDto task = new TaskResponseDto(5L, "Loaded task", "", Status.WAITING, Priority.LOW, 1L, 2L, 0L);
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(taskRepository.streamAll(any())).thenReturn(Stream.of(task));
+        when(userService.getCurrentUser()).thenReturn(user);
+
+        taskSuggestService.afterSingletonsInstantiated();
+
+        assertEquals(List.of(5L), ids(taskSuggestService.suggest("load", 10, null, null)));
+        verify(transactionManager).commit(any());
+    }
+
+    private static List<Long> ids(List<TaskSuggestionDto> suggestions) {
+        return suggestions.stream().map(TaskSuggestionDto::getId).toList();
+    }
+}
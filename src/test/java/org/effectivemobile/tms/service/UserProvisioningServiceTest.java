@@ -0,0 +1,210 @@
+package org.effectivemobile.tms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.effectivemobile.tms.dto.user.UserAuthRequestDto;
+import org.effectivemobile.tms.dto.user.UserBatchCreateRequestDto;
+import org.effectivemobile.tms.dto.user.UserBatchItemResultDto;
+import org.effectivemobile.tms.dto.user.UserResponseDto;
+import org.effectivemobile.tms.entity.User;
+import org.effectivemobile.tms.mapper.UserMapper;
+import org.effectivemobile.tms.repository.UserBatchRepository;
+import org.effectivemobile.tms.repository.UserRepository;
+import org.effectivemobile.tms.util.enums.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserProvisioningServiceTest {
+
+    @InjectMocks
+    private UserProvisioningService userProvisioningService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserBatchRepository userBatchRepository;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Spy
+    private PasswordHashingService passwordHashingService = new PasswordHashingService(new SimpleMeterRegistry(), 1, 1, 2, 1);
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        admin = new User();
+        admin.setId(1L);
+        admin.setUsername("admin");
+        admin.setRole(Role.ADMIN);
+    }
+
+    @Test
+    void createBatch_ShouldSkipTakenAndRepeatedUsernames_WhenCheckingCollisions() {
+        UserBatchCreateRequestDto dto = new UserBatchCreateRequestDto(List.of(
+                new UserAuthRequestDto("first", "password1"),
+                new UserAuthRequestDto("taken", "password2"),
+                new UserAuthRequestDto("first", "password3"),
+                new UserAuthRequestDto("second", "password4")));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findExistingUsernames(Set.of("first", "taken", "second"))).thenReturn(Set.of("taken"));
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        when(userBatchRepository.isSupported()).thenReturn(true);
+        when(userBatchRepository.insertAll(any())).thenReturn(Map.of("first", 10L, "second", 11L));
+        when(userMapper.entityToResponseDto(any(User.class)))
+                .thenAnswer(invocation -> new UserResponseDto(invocation.<User>getArgument(0).getId(), null, Role.USER));
+
+        List<UserBatchItemResultDto> results = userProvisioningService.createBatch(dto);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(passwordEncoder, transactionManager, userBatchRepository);
+        inOrder.verify(passwordEncoder, times(2)).encode(anyString());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(userBatchRepository).insertAll(captor.capture());
+        inOrder.verify(transactionManager).commit(any());
+        assertEquals(List.of("first", "second"), captor.getValue().stream().map(User::getUsername).toList());
+        assertEquals(List.of("hash-password1", "hash-password4"), captor.getValue().stream().map(User::getPassword).toList());
+        verify(passwordEncoder, never()).encode("password2");
+        verify(passwordEncoder, never()).encode("password3");
+
+        assertEquals(10L, results.get(0).getUser().getId());
+        assertEquals("Пользователь с таким именем уже существует", results.get(1).getError());
+        assertEquals("Имя пользователя повторяется в запросе", results.get(2).getError());
+        assertEquals(11L, results.get(3).getUser().getId());
+    }
+
+    @Test
+    void createBatch_ShouldReportTakenUsername_WhenInsertSkipsConflict() {
+        UserBatchCreateRequestDto dto = new UserBatchCreateRequestDto(List.of(new UserAuthRequestDto("raced", "password")));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findExistingUsernames(any())).thenReturn(Set.of());
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(userBatchRepository.isSupported()).thenReturn(true);
+        when(userBatchRepository.insertAll(any())).thenReturn(Map.of());
+
+        List<UserBatchItemResultDto> results = userProvisioningService.createBatch(dto);
+
+        assertNull(results.get(0).getUser());
+        assertEquals("Пользователь с таким именем уже существует", results.get(0).getError());
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void createBatch_ShouldRollBackWholeBatch_WhenInsertFails() {
+        UserBatchCreateRequestDto dto = new UserBatchCreateRequestDto(List.of(new UserAuthRequestDto("first", "password")));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findExistingUsernames(any())).thenReturn(Set.of());
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(userBatchRepository.isSupported()).thenReturn(true);
+        when(userBatchRepository.insertAll(any())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThrows(QueryTimeoutException.class, () -> userProvisioningService.createBatch(dto));
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void createBatch_ShouldSaveThroughJpa_WhenBatchInsertIsNotSupported() {
+        UserBatchCreateRequestDto dto = new UserBatchCreateRequestDto(List.of(new UserAuthRequestDto("first", "password")));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findExistingUsernames(any())).thenReturn(Set.of());
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(userBatchRepository.isSupported()).thenReturn(false);
+        when(userRepository.saveAll(any())).thenAnswer(invocation -> {
+            invocation.<List<User>>getArgument(0).forEach(user -> user.setId(5L));
+            return invocation.getArgument(0);
+        });
+        when(userMapper.entityToResponseDto(any(User.class))).thenReturn(new UserResponseDto(5L, "first", Role.USER));
+
+        List<UserBatchItemResultDto> results = userProvisioningService.createBatch(dto);
+
+        assertEquals(5L, results.get(0).getUser().getId());
+        verify(userBatchRepository, never()).insertAll(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void createBatch_ShouldRejectBatch_WhenBulkHashingIsBusy() throws Exception {
+        UserBatchCreateRequestDto dto = new UserBatchCreateRequestDto(List.of(new UserAuthRequestDto("first", "password")));
+
+        when(userService.getCurrentUser()).thenReturn(admin);
+        when(userRepository.findExistingUsernames(any())).thenReturn(Set.of());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<Object>> running = CompletableFuture.supplyAsync(() -> passwordHashingService.mapAll(List.of(1), item -> {
+            started.countDown();
+            return await(release);
+        }));
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertThrows(RejectedExecutionException.class, () -> userProvisioningService.createBatch(dto));
+            verifyNoInteractions(passwordEncoder, userBatchRepository);
+        } finally {
+            release.countDown();
+        }
+        running.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void createBatch_ShouldThrowException_WhenUserIsNotAdmin() {
+        User user = new User();
+        user.setId(2L);
+        user.setRole(Role.USER);
+        when(userService.getCurrentUser()).thenReturn(user);
+
+        UserBatchCreateRequestDto dto = new UserBatchCreateRequestDto(List.of(new UserAuthRequestDto("first", "password")));
+
+        assertThrows(AccessDeniedException.class, () -> userProvisioningService.createBatch(dto));
+        verifyNoInteractions(userRepository, userBatchRepository, passwordEncoder);
+    }
+
+    private static Object await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -12,11 +12,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -24,6 +28,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -39,6 +44,9 @@ class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager();
+
     private User admin;
 
     private User user1;
@@ -89,7 +97,7 @@ class UserServiceTest {
         List<User> users = List.of(admin, user1, user2);
         Page<User> userPage = new PageImpl<>(users);
 
-        when(userRepository.findAll(any(Pageable.class))).thenReturn(userPage);
+        when(userRepository.findAllBy(any(Pageable.class))).thenReturn(userPage);
         when(userMapper.entityToResponseDto(any(User.class))).thenReturn(userResponseDto);
 
         List<UserResponseDto> result = userService.getAll(0, 10);
@@ -174,4 +182,38 @@ class UserServiceTest {
 
         assertThrows(EntityExistsException.class, () -> userService.create(requestDto));
     }
+
+    @Test
+    void getCurrentUser_ShouldReturnPrincipal_WithoutQueryingRepository() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user1, null, user1.getAuthorities()));
+
+        User result = userService.getCurrentUser();
+
+        assertEquals(user1, result);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getCurrentUser_ShouldReadUserFromCache_OnRepeatedCalls() {
+        mockUserAuthentication();
+
+        User first = userService.getCurrentUser();
+        User second = userService.getCurrentUser();
+
+        assertSame(user1, first);
+        assertSame(user1, second);
+        verify(userRepository, times(1)).findByUsername(user1.getUsername());
+    }
+
+    @Test
+    void updatePassword_ShouldReplaceHashOfStoredUser() {
+        User stored = new User(user1.getId(), user1.getUsername(), "$2a$10$old", Role.USER);
+
+        when(userRepository.findByUsername(user1.getUsername())).thenReturn(Optional.of(stored));
+
+        User result = (User) userService.updatePassword(user1, "$2a$12$new");
+
+        assertEquals("$2a$12$new", result.getPassword());
+        assertSame(stored, result);
+    }
 }